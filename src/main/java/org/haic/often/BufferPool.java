@@ -0,0 +1,211 @@
+package org.haic.often;
+
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NotNull;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 全局缓冲区池,按大小分级复用直接内存和堆内存缓冲区
+ * <p>
+ * 缓冲区容量按2的幂分级(4K至4M),超出范围的缓冲区不复用; 空闲缓冲区存放在所有线程共享的多个分段中,按线程ID选择分段以减少锁竞争,当前分段没有空闲缓冲区时从其它分段获取
+ * <p>
+ * 下载线程可能是虚拟线程或按需创建的线程,线程结束后缓冲区仍保留在分段中供其它线程复用; 分段已满或总字节数超过上限时,归还的缓冲区交由GC回收
+ * <p>
+ * 借出的缓冲区使用完毕后需调用 {@link #release(ByteBuffer)} 归还,同一缓冲区不能重复归还
+ *
+ * @author haicdust
+ * @version 1.0
+ * @since 2022/10/1 15:08
+ */
+public class BufferPool {
+
+	protected static final int MIN_SHIFT = 12; // 最小分级 4K
+	protected static final int MAX_SHIFT = 22; // 最大分级 4M
+	protected static final int CLASSES = MAX_SHIFT - MIN_SHIFT + 1;
+	protected static final int STRIPES = Math.min(64, Runtime.getRuntime().availableProcessors() * 2); // 分段数量
+	protected static final int STRIPE_CLASS_BYTES = 1048576; // 每个分段每个分级缓存的字节数上限,至少缓存2个缓冲区
+	protected static final long MAX_POOLED_BYTES = 67108864; // 缓冲区池缓存的字节数上限,64M
+
+	protected static final Stripe[] DIRECT = stripes(); // 直接内存分段
+	protected static final Stripe[] HEAP = stripes(); // 堆内存分段
+
+	protected static final AtomicLong pooledBytes = new AtomicLong(); // 缓冲区池中空闲的字节数
+	protected static final AtomicLong allocations = new AtomicLong(); // 新分配次数
+	protected static final AtomicLong allocatedBytes = new AtomicLong(); // 新分配字节数
+	protected static final AtomicLong borrows = new AtomicLong(); // 借出次数
+	protected static final AtomicLong hits = new AtomicLong(); // 借出时复用的次数
+	protected static final AtomicLong outstanding = new AtomicLong(); // 借出未归还的数量
+	protected static final AtomicLongArray classBorrows = new AtomicLongArray(CLASSES); // 各分级借出次数
+
+	protected BufferPool() {
+	}
+
+	/**
+	 * 借出直接内存缓冲区,适用于通道读写,避免堆内存与本地内存之间的复制
+	 *
+	 * @param size 最小容量
+	 * @return 缓冲区, 容量不小于指定大小, 位置为0, 限制为容量
+	 */
+	@Contract(pure = true) public static ByteBuffer direct(int size) {
+		return borrow(size, true);
+	}
+
+	/**
+	 * 借出堆内存缓冲区,可通过 {@link ByteBuffer#array()} 获取字节数组用于流读写
+	 *
+	 * @param size 最小容量
+	 * @return 缓冲区, 容量不小于指定大小, 位置为0, 限制为容量
+	 */
+	@Contract(pure = true) public static ByteBuffer heap(int size) {
+		return borrow(size, false);
+	}
+
+	/**
+	 * 归还缓冲区,非本缓冲区池分级大小的缓冲区将被丢弃
+	 *
+	 * @param buffer 缓冲区
+	 */
+	@Contract(pure = true) public static void release(@NotNull ByteBuffer buffer) {
+		int index = index(buffer.capacity());
+		if (index < 0 || buffer.capacity() != 1 << (index + MIN_SHIFT) || buffer.isReadOnly()) {
+			return;
+		}
+		outstanding.decrementAndGet();
+		Stripe stripe = (buffer.isDirect() ? DIRECT : HEAP)[stripe()];
+		if (pooledBytes.addAndGet(buffer.capacity()) > MAX_POOLED_BYTES || !stripe.offer(index, buffer.clear())) {
+			pooledBytes.addAndGet(-buffer.capacity()); // 超出上限,交由GC回收
+		}
+	}
+
+	/**
+	 * 获取缓冲区池使用情况
+	 *
+	 * @return 使用情况
+	 */
+	@Contract(pure = true) public static Usage usage() {
+		long[] counts = new long[CLASSES];
+		for (int i = 0; i < CLASSES; i++) {
+			counts[i] = classBorrows.get(i);
+		}
+		return new Usage(allocations.get(), allocatedBytes.get(), borrows.get(), hits.get(), outstanding.get(), pooledBytes.get(), counts);
+	}
+
+	@Contract(pure = true) protected static ByteBuffer borrow(int size, boolean direct) {
+		borrows.incrementAndGet();
+		int index = index(size);
+		if (index < 0) { // 超出分级范围,不复用
+			return allocate(size, direct);
+		}
+		classBorrows.incrementAndGet(index);
+		outstanding.incrementAndGet();
+		Stripe[] stripes = direct ? DIRECT : HEAP;
+		for (int i = 0, home = stripe(); i < STRIPES; i++) { // 优先从当前线程对应的分段获取
+			ByteBuffer buffer = stripes[(home + i) % STRIPES].poll(index);
+			if (buffer != null) {
+				pooledBytes.addAndGet(-buffer.capacity());
+				hits.incrementAndGet();
+				return buffer;
+			}
+		}
+		return allocate(1 << (index + MIN_SHIFT), direct);
+	}
+
+	/**
+	 * 获取当前线程对应的分段
+	 *
+	 * @return 分段下标
+	 */
+	@Contract(pure = true) protected static int stripe() {
+		return (int) (Thread.currentThread().getId() % STRIPES);
+	}
+
+	@Contract(pure = true) protected static ByteBuffer allocate(int size, boolean direct) {
+		allocations.incrementAndGet();
+		allocatedBytes.addAndGet(size);
+		return direct ? ByteBuffer.allocateDirect(size) : ByteBuffer.allocate(size);
+	}
+
+	/**
+	 * 获取容量对应的分级
+	 *
+	 * @param size 容量
+	 * @return 分级, 超出范围时为-1
+	 */
+	@Contract(pure = true) protected static int index(int size) {
+		int shift = size <= 1 << MIN_SHIFT ? MIN_SHIFT : 32 - Integer.numberOfLeadingZeros(size - 1);
+		return shift > MAX_SHIFT ? -1 : shift - MIN_SHIFT;
+	}
+
+	@Contract(pure = true) protected static Stripe[] stripes() {
+		Stripe[] stripes = new Stripe[STRIPES];
+		for (int i = 0; i < STRIPES; i++) {
+			stripes[i] = new Stripe();
+		}
+		return stripes;
+	}
+
+	/**
+	 * 缓冲区池使用情况
+	 *
+	 * @param allocations    新分配缓冲区的次数
+	 * @param allocatedBytes 新分配的字节数
+	 * @param borrows        借出次数
+	 * @param hits           借出时复用已有缓冲区的次数
+	 * @param outstanding    借出后尚未归还的缓冲区数量
+	 * @param pooledBytes    缓冲区池中空闲的字节数
+	 * @param classBorrows   各分级(4K,8K,...,4M)的借出次数
+	 */
+	public record Usage(long allocations, long allocatedBytes, long borrows, long hits, long outstanding, long pooledBytes, long[] classBorrows) {}
+
+	/**
+	 * 缓冲区池分段,每个分级使用固定容量的栈存放空闲缓冲区,最近归还的缓冲区最先借出
+	 *
+	 * @author haicdust
+	 * @version 1.0
+	 * @since 2022/10/1 15:08
+	 */
+	protected static class Stripe {
+		protected final ByteBuffer[][] stacks = new ByteBuffer[CLASSES][];
+		protected final int[] sizes = new int[CLASSES];
+
+		protected Stripe() {
+			for (int i = 0; i < CLASSES; i++) {
+				stacks[i] = new ByteBuffer[Math.max(2, STRIPE_CLASS_BYTES >> (i + MIN_SHIFT))];
+			}
+		}
+
+		/**
+		 * 取出空闲缓冲区
+		 *
+		 * @param index 分级
+		 * @return 缓冲区, 没有空闲缓冲区时为null
+		 */
+		@Contract(pure = true) protected synchronized ByteBuffer poll(int index) {
+			if (sizes[index] == 0) {
+				return null;
+			}
+			ByteBuffer buffer = stacks[index][--sizes[index]];
+			stacks[index][sizes[index]] = null;
+			return buffer;
+		}
+
+		/**
+		 * 放入空闲缓冲区
+		 *
+		 * @param index  分级
+		 * @param buffer 缓冲区
+		 * @return 是否放入, 分级已满时为false
+		 */
+		@Contract(pure = true) protected synchronized boolean offer(int index, @NotNull ByteBuffer buffer) {
+			if (sizes[index] == stacks[index].length) {
+				return false;
+			}
+			stacks[index][sizes[index]++] = buffer;
+			return true;
+		}
+	}
+
+}
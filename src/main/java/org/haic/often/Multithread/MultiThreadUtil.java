@@ -4,6 +4,7 @@ import org.jetbrains.annotations.Contract;
 import org.jetbrains.annotations.NotNull;
 
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 
@@ -30,6 +31,52 @@ public class MultiThreadUtil {
 		}
 	}
 
+	/**
+	 * 创建每个任务一个虚拟线程的线程池,运行环境不支持虚拟线程时(JDK 21以下且未启用预览特性),返回按需创建守护线程的线程池
+	 *
+	 * @return 线程池对象
+	 */
+	@Contract(pure = true) public static ExecutorService newVirtualThreadPerTaskExecutor() {
+		ExecutorService executor = virtualThreadPerTaskExecutor();
+		return executor == null ? Executors.newCachedThreadPool(MultiThreadUtil::daemonThread) : executor;
+	}
+
+	/**
+	 * 创建每个任务一个虚拟线程的线程池,运行环境不支持虚拟线程时,返回固定线程数的守护线程池,同时运行的任务数不超过线程数
+	 *
+	 * @param nThreads 不支持虚拟线程时的线程数
+	 * @return 线程池对象
+	 */
+	@Contract(pure = true) public static ExecutorService newVirtualThreadPerTaskExecutor(int nThreads) {
+		ExecutorService executor = virtualThreadPerTaskExecutor();
+		return executor == null ? Executors.newFixedThreadPool(nThreads, MultiThreadUtil::daemonThread) : executor;
+	}
+
+	/**
+	 * 通过反射创建虚拟线程池,编译目标版本不包含虚拟线程
+	 *
+	 * @return 线程池对象, 不支持虚拟线程时返回null
+	 */
+	@Contract(pure = true) private static ExecutorService virtualThreadPerTaskExecutor() {
+		try {
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch (ReflectiveOperationException | UnsupportedOperationException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * 创建守护线程,与虚拟线程一致,不阻止JVM退出
+	 *
+	 * @param runnable 线程任务
+	 * @return 线程对象
+	 */
+	@Contract(pure = true) private static Thread daemonThread(@NotNull Runnable runnable) {
+		Thread thread = new Thread(runnable);
+		thread.setDaemon(true);
+		return thread;
+	}
+
 	/**
 	 * 线程等待 MILLISECONDS_SLEEP
 	 *
@@ -0,0 +1,374 @@
+package org.haic.often.Network;
+
+import org.haic.often.Judge;
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NotNull;
+
+import java.net.URI;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * 批量请求执行器,在全局并发数和每个域名并发数限制下并发执行多个 {@link Connection} 请求,按完成顺序返回结果
+ * <p>
+ * 请求通过 {@link Connection#executeAsync()} 执行,等待并发许可的请求只在队列中排队,不占用线程; 不同域名的请求轮流获得许可,不会因为某个域名的请求过多而阻塞其他域名
+ * <p>
+ * 失败的请求(异常,请求超时或指定状态码)在等待后重新排队,重试期间不占用并发许可,每个结果记录请求次数和最终的响应或异常; 同一执行器的多个批次共用并发数限制
+ *
+ * @author haicdust
+ * @version 1.0
+ * @since 2022/10/3 19:20
+ */
+public class BatchExecutor {
+
+	protected final int MAX_CONNECTIONS; // 全局最大并发数
+	protected final Map<String, Integer> hostLimits = new ConcurrentHashMap<>(); // 指定域名的最大并发数
+	protected final Map<String, Host> hosts = new HashMap<>(); // 有请求排队或运行中的域名
+	protected final ArrayDeque<Host> ready = new ArrayDeque<>(); // 有请求排队且未达到并发数上限的域名,按顺序轮流获得许可
+	protected int HOST_LIMIT; // 默认每个域名最大并发数
+	protected int retry; // 失败重试次数
+	protected int MILLISECONDS_SLEEP; // 重试等待时间
+	protected List<Integer> retryStatusCodes = new ArrayList<>(); // 重试的错误状态码
+	protected int running; // 运行中的请求数
+
+	/**
+	 * 创建批量请求执行器
+	 *
+	 * @param maxConnections 全局最大并发数
+	 */
+	public BatchExecutor(int maxConnections) {
+		if (maxConnections < 1) {
+			throw new RuntimeException("maxConnections Less than 1");
+		}
+		this.MAX_CONNECTIONS = this.HOST_LIMIT = maxConnections;
+	}
+
+	/**
+	 * 设置默认每个域名最大并发数,默认等于全局最大并发数
+	 *
+	 * @param limit 最大并发数
+	 * @return 此执行器
+	 */
+	@Contract(pure = true) public synchronized BatchExecutor hostLimit(int limit) {
+		if (limit < 1) {
+			throw new RuntimeException("limit Less than 1");
+		}
+		this.HOST_LIMIT = limit;
+		return this;
+	}
+
+	/**
+	 * 设置指定域名最大并发数
+	 *
+	 * @param host  域名
+	 * @param limit 最大并发数
+	 * @return 此执行器
+	 */
+	@Contract(pure = true) public BatchExecutor hostLimit(@NotNull String host, int limit) {
+		if (limit < 1) {
+			throw new RuntimeException("limit Less than 1");
+		}
+		hostLimits.put(host.toLowerCase(), limit);
+		return this;
+	}
+
+	/**
+	 * 设置失败重试次数,默认不重试
+	 * <p>
+	 * 抛出异常,请求超时或返回指定状态码时视为失败,重试在连接自身的重试之外进行
+	 *
+	 * @param retry 重试次数
+	 * @return 此执行器
+	 */
+	@Contract(pure = true) public synchronized BatchExecutor retry(int retry) {
+		this.retry = retry;
+		return this;
+	}
+
+	/**
+	 * 设置失败重试次数和重试等待时间
+	 *
+	 * @param retry  重试次数
+	 * @param millis 重试等待时间(毫秒)
+	 * @return 此执行器
+	 */
+	@Contract(pure = true) public synchronized BatchExecutor retry(int retry, int millis) {
+		this.retry = retry;
+		this.MILLISECONDS_SLEEP = millis;
+		return this;
+	}
+
+	/**
+	 * 额外指定需要重试的错误状态码,可指定多个
+	 *
+	 * @param statusCode 状态码
+	 * @return 此执行器
+	 */
+	@Contract(pure = true) public synchronized BatchExecutor retryStatusCodes(int... statusCode) {
+		retryStatusCodes = Arrays.stream(statusCode).boxed().toList();
+		return this;
+	}
+
+	/**
+	 * 并发执行多个URL的请求
+	 *
+	 * @param urls    URL列表
+	 * @param connect 根据URL创建连接的方法,例如 HttpsUtil::connect
+	 * @return 按完成顺序排列的结果流, 读取时等待请求完成
+	 */
+	@Contract(pure = true) public Stream<Result> execute(@NotNull Collection<String> urls, @NotNull Function<String, Connection> connect) {
+		BlockingQueue<Result> results = new LinkedBlockingQueue<>();
+		int index = 0;
+		for (String url : urls) {
+			submit(new Task(index++, url, connect.apply(url), results));
+		}
+		return stream(results, index);
+	}
+
+	/**
+	 * 并发执行多个已设置好的连接,每个连接在批次中只能出现一次
+	 *
+	 * @param conns 连接列表
+	 * @return 按完成顺序排列的结果流, 读取时等待请求完成
+	 */
+	@Contract(pure = true) public Stream<Result> execute(@NotNull Collection<? extends Connection> conns) {
+		BlockingQueue<Result> results = new LinkedBlockingQueue<>();
+		int index = 0;
+		for (Connection conn : conns) {
+			submit(new Task(index++, url(conn), conn, results));
+		}
+		return stream(results, index);
+	}
+
+	/**
+	 * 将请求加入所属域名的队列,并尝试运行
+	 *
+	 * @param task 请求
+	 */
+	@Contract(pure = true) protected void submit(@NotNull Task task) {
+		synchronized (this) {
+			Host host = hosts.computeIfAbsent(task.host, l -> new Host(Math.min(MAX_CONNECTIONS, hostLimits.getOrDefault(l, HOST_LIMIT))));
+			host.pending.add(task);
+			if (!host.queued && host.running < host.limit) {
+				ready.add(host);
+				host.queued = true;
+			}
+		}
+		dispatch();
+	}
+
+	/**
+	 * 在并发数限制内,从各域名队列中轮流取出请求运行,直至没有可运行的请求
+	 * <p>
+	 * 已完成的请求(例如缓存命中)在当前循环中处理结果后继续调度,不在回调中递归调度,大量请求同步完成时不会栈溢出
+	 */
+	@Contract(pure = true) protected void dispatch() {
+		for (List<Task> tasks = next(); !tasks.isEmpty(); tasks = next()) {
+			for (Task task : tasks) { // 在锁外发送请求,同步执行的连接不阻塞其他请求的调度
+				task.attempts++;
+				CompletableFuture<Response> future;
+				try {
+					future = task.conn.executeAsync();
+				} catch (RuntimeException e) {
+					future = CompletableFuture.failedFuture(e);
+				}
+				if (future.isDone()) { // 回调在当前线程立即执行,由外层循环继续调度
+					future.whenComplete((res, e) -> complete(task, res, e));
+				} else {
+					future.whenComplete((res, e) -> {
+						try {
+							complete(task, res, e);
+						} finally {
+							dispatch();
+						}
+					});
+				}
+			}
+		}
+	}
+
+	/**
+	 * 在并发数限制内,从各域名队列中轮流取出可运行的请求
+	 *
+	 * @return 可运行的请求, 没有时为空列表
+	 */
+	@Contract(pure = true) protected synchronized List<Task> next() {
+		List<Task> tasks = new ArrayList<>();
+		while (running < MAX_CONNECTIONS && !ready.isEmpty()) {
+			Host host = ready.poll();
+			tasks.add(host.pending.poll());
+			host.running++;
+			running++;
+			host.queued = !host.pending.isEmpty() && host.running < host.limit;
+			if (host.queued) {
+				ready.add(host);
+			}
+		}
+		return tasks;
+	}
+
+	/**
+	 * 请求结束,释放并发许可,失败时等待后重新排队,否则记录结果
+	 * <p>
+	 * 处理过程中抛出异常时同样记录结果,保证批次的结果数量不变,读取结果时不会一直等待
+	 *
+	 * @param task  请求
+	 * @param res   响应
+	 * @param error 异常
+	 */
+	@Contract(pure = true) protected void complete(@NotNull Task task, Response res, Throwable error) {
+		boolean requeued = false;
+		try {
+			boolean retryable;
+			int delay;
+			synchronized (this) {
+				Host host = hosts.get(task.host);
+				host.running--;
+				running--;
+				if (!host.queued && !host.pending.isEmpty()) {
+					ready.add(host);
+					host.queued = true;
+				} else if (host.running == 0 && host.pending.isEmpty()) {
+					hosts.remove(task.host);
+				}
+				if (error instanceof CompletionException && !Judge.isNull(error.getCause())) {
+					error = error.getCause();
+				}
+				int statusCode = Judge.isNull(res) ? 0 : res.statusCode();
+				retryable = task.attempts <= retry && (!Judge.isNull(error) || URIUtils.statusIsTimeout(statusCode) || retryStatusCodes.contains(statusCode));
+				delay = MILLISECONDS_SLEEP;
+			}
+			if (retryable) { // 等待期间不占用并发许可
+				CompletableFuture.delayedExecutor(delay, TimeUnit.MILLISECONDS).execute(() -> submit(task));
+				requeued = true;
+			}
+		} catch (RuntimeException | Error e) {
+			error = Judge.isNull(error) ? e : error; // 结果中记录处理时抛出的异常
+			throw e;
+		} finally {
+			if (!requeued) {
+				task.results.add(new Result(task.index, task.url, res, error, task.attempts, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - task.start)));
+			}
+		}
+	}
+
+	/**
+	 * 按完成顺序读取结果
+	 *
+	 * @param results 结果队列
+	 * @param count   结果数量
+	 * @return 结果流
+	 */
+	@Contract(pure = true) protected static Stream<Result> stream(@NotNull BlockingQueue<Result> results, int count) {
+		Iterator<Result> iterator = new Iterator<>() {
+			int remaining = count;
+
+			@Override public boolean hasNext() {
+				return remaining > 0;
+			}
+
+			@Override public Result next() {
+				if (remaining == 0) {
+					throw new NoSuchElementException();
+				}
+				try {
+					Result result = results.take();
+					remaining--;
+					return result;
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new RuntimeException(e);
+				}
+			}
+		};
+		return StreamSupport.stream(Spliterators.spliterator(iterator, count, Spliterator.NONNULL | Spliterator.SIZED), false);
+	}
+
+	/**
+	 * 获取连接的请求URL
+	 *
+	 * @param conn 连接
+	 * @return URL, 不支持的连接类型为null
+	 */
+	@Contract(pure = true) protected static String url(@NotNull Connection conn) {
+		if (conn instanceof HttpsUtil.HttpConnection connection) {
+			return connection.url;
+		} else if (conn instanceof JsoupUtil.HttpConnection connection) {
+			return connection.conn.request().url().toExternalForm();
+		} else if (conn instanceof HttpClientUtil.HttpConnection connection) {
+			return connection.url;
+		}
+		return null;
+	}
+
+	/**
+	 * 域名的请求队列
+	 */
+	protected static class Host {
+		protected final int limit; // 最大并发数
+		protected final Queue<Task> pending = new ArrayDeque<>(); // 等待运行的请求
+		protected int running; // 运行中的请求数
+		protected boolean queued; // 是否在就绪队列中
+
+		protected Host(int limit) {
+			this.limit = limit;
+		}
+	}
+
+	/**
+	 * 批次中的单个请求
+	 */
+	protected static class Task {
+		protected final int index; // 在批次中的位置
+		protected final String url;
+		protected final String host; // 域名,用于并发数限制
+		protected final Connection conn;
+		protected final BlockingQueue<Result> results; // 所属批次的结果队列
+		protected final long start = System.nanoTime();
+		protected int attempts; // 请求次数
+
+		protected Task(int index, String url, @NotNull Connection conn, @NotNull BlockingQueue<Result> results) {
+			this.index = index;
+			this.url = url;
+			URI uri = Judge.isEmpty(url) ? null : URIUtils.getURI(url);
+			this.host = Judge.isNull(uri) || Judge.isNull(uri.getHost()) ? "" : uri.getHost().toLowerCase(); // 无法获取域名的请求共用一个队列
+			this.conn = conn;
+			this.results = results;
+		}
+	}
+
+	/**
+	 * 单个请求的结果
+	 *
+	 * @param index    请求在批次中的位置
+	 * @param url      请求URL,无法获取时为null
+	 * @param response 最后一次请求的响应,抛出异常时为null
+	 * @param error    最后一次请求抛出的异常,没有时为null
+	 * @param attempts 请求次数,包含重试
+	 * @param millis   从提交到结束的毫秒数,包含排队和重试等待时间
+	 */
+	public record Result(int index, String url, Response response, Throwable error, int attempts, long millis) {
+
+		/**
+		 * 请求是否成功,没有异常且状态码为200+或300+
+		 *
+		 * @return 是否成功
+		 */
+		@Contract(pure = true) public boolean ok() {
+			return Judge.isNull(error) && URIUtils.statusIsNormal(response.statusCode());
+		}
+
+		/**
+		 * 获取状态码
+		 *
+		 * @return 状态码, 抛出异常时为0
+		 */
+		@Contract(pure = true) public int statusCode() {
+			return Judge.isNull(response) ? 0 : response.statusCode();
+		}
+	}
+
+}
@@ -0,0 +1,228 @@
+package org.haic.often.Network;
+
+import com.alibaba.fastjson.JSONObject;
+import org.haic.often.Judge;
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+
+/**
+ * 文件分块校验清单,用于差异下载
+ * <p>
+ * 文件按固定大小分块,每块记录一个弱校验值(rsync滚动校验和)和一个强校验值(md5),下载新版本文件时,在本地旧版本文件中逐字节滚动查找弱校验值相同的块,再以md5确认,找到的块直接从旧文件复制,其余块通过范围请求下载
+ * <p>
+ * 清单可以由 {@link #of(File, int)} 根据新版本文件生成,通过 {@link #toJSONString()} 和 {@link #parse(String)} 与下载方交换
+ *
+ * @author haicdust
+ * @version 1.0
+ * @since 2022/10/2 16:40
+ */
+public class BlockManifest {
+
+	protected final long fileSize; // 文件大小
+	protected final int blockSize; // 块大小
+	protected final List<Integer> rolling; // 每块的弱校验值
+	protected final List<String> hashes; // 每块的md5
+
+	protected BlockManifest(long fileSize, int blockSize, @NotNull List<Integer> rolling, @NotNull List<String> hashes) {
+		if (blockSize < 1 || rolling.size() != hashes.size() || hashes.size() != (fileSize + blockSize - 1) / blockSize) {
+			throw new RuntimeException("Manifest is error, fileSize: " + fileSize + " blockSize: " + blockSize + " blocks: " + hashes.size());
+		}
+		this.fileSize = fileSize;
+		this.blockSize = blockSize;
+		this.rolling = rolling;
+		this.hashes = hashes.stream().map(String::toLowerCase).toList();
+	}
+
+	/**
+	 * 根据文件生成分块校验清单
+	 *
+	 * @param file      文件
+	 * @param blockSize 块大小
+	 * @return 分块校验清单
+	 */
+	@Contract(pure = true) public static BlockManifest of(@NotNull File file, int blockSize) {
+		if (blockSize < 1) {
+			throw new RuntimeException("blockSize Less than 1");
+		}
+		List<Integer> rolling = new ArrayList<>();
+		List<String> hashes = new ArrayList<>();
+		byte[] block = new byte[blockSize];
+		MessageDigest md5 = md5();
+		try (InputStream in = new FileInputStream(file)) {
+			for (int length; (length = in.readNBytes(block, 0, blockSize)) > 0; ) {
+				rolling.add(checksum(block, 0, length));
+				md5.update(block, 0, length);
+				hashes.add(HexFormat.of().formatHex(md5.digest()));
+			}
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+		return new BlockManifest(file.length(), blockSize, rolling, hashes);
+	}
+
+	/**
+	 * 解析JSON格式的分块校验清单
+	 *
+	 * @param json JSON字符串
+	 * @return 分块校验清单
+	 */
+	@Contract(pure = true) public static BlockManifest parse(@NotNull String json) {
+		JSONObject info = JSONObject.parseObject(json);
+		return new BlockManifest(info.getLongValue("fileSize"), info.getIntValue("blockSize"), info.getJSONArray("rolling").toJavaList(Integer.class),
+				info.getJSONArray("hash").toJavaList(String.class));
+	}
+
+	/**
+	 * 转换为JSON字符串
+	 *
+	 * @return JSON字符串
+	 */
+	@Contract(pure = true) public String toJSONString() {
+		JSONObject info = new JSONObject(true);
+		info.put("fileSize", fileSize);
+		info.put("blockSize", blockSize);
+		info.put("rolling", rolling);
+		info.put("hash", hashes);
+		return info.toJSONString();
+	}
+
+	/**
+	 * 获取文件大小
+	 *
+	 * @return 文件大小
+	 */
+	@Contract(pure = true) public long fileSize() {
+		return fileSize;
+	}
+
+	/**
+	 * 获取块大小
+	 *
+	 * @return 块大小
+	 */
+	@Contract(pure = true) public int blockSize() {
+		return blockSize;
+	}
+
+	/**
+	 * 获取每块的md5
+	 *
+	 * @return md5列表
+	 */
+	@Contract(pure = true) public List<String> hashes() {
+		return hashes;
+	}
+
+	/**
+	 * 在本地文件中查找与清单中的块内容相同的位置
+	 * <p>
+	 * 以块大小为窗口逐字节滚动计算弱校验值,命中时计算md5确认,确认后窗口跳过整块; 文件末尾不足一块的部分不参与查找
+	 *
+	 * @param seed 本地文件
+	 * @return 每块在本地文件中的位置, 未找到为-1
+	 * @throws IOException 如果发生 I/O 异常
+	 */
+	@Contract(pure = true) public long[] match(@NotNull File seed) throws IOException {
+		int count = hashes.size();
+		long[] offsets = new long[count];
+		Arrays.fill(offsets, -1);
+		Map<Integer, List<Integer>> index = new HashMap<>(); // 弱校验值对应的完整块
+		boolean[] filter = new boolean[65536]; // 弱校验值的16位摘要,未命中时无需查找索引
+		for (int i = 0; i < count; i++) {
+			if ((long) (i + 1) * blockSize <= fileSize) {
+				index.computeIfAbsent(rolling.get(i), l -> new ArrayList<>()).add(i);
+				filter[(rolling.get(i) ^ rolling.get(i) >>> 16) & 0xffff] = true;
+			}
+		}
+		int remaining = index.values().stream().mapToInt(List::size).sum();
+		if (remaining == 0 || !seed.isFile()) {
+			return offsets;
+		}
+		byte[] buffer = new byte[Math.max(blockSize * 2, 1048576)];
+		MessageDigest md5 = md5();
+		try (InputStream in = new FileInputStream(seed)) {
+			long base = 0; // buffer[0] 在文件中的位置
+			int length = 0, position = 0, a = 0, b = 0;
+			boolean fresh = true; // 需要重新计算窗口的校验值
+			while (remaining > 0) {
+				if (position + blockSize >= length) { // 窗口及其后一个字节超出缓冲区,移动剩余数据并继续读取
+					System.arraycopy(buffer, position, buffer, 0, length - position);
+					base += position;
+					length -= position;
+					position = 0;
+					length += in.readNBytes(buffer, length, buffer.length - length);
+					if (blockSize > length) {
+						break;
+					}
+				}
+				if (fresh) {
+					int checksum = checksum(buffer, position, blockSize);
+					a = checksum & 0xffff;
+					b = checksum >>> 16;
+					fresh = false;
+				}
+				List<Integer> candidates = filter[a ^ b] ? index.get(b << 16 | a) : null;
+				if (!Judge.isNull(candidates)) {
+					md5.update(buffer, position, blockSize);
+					String hash = HexFormat.of().formatHex(md5.digest());
+					boolean matched = false;
+					for (int i : candidates) {
+						if (offsets[i] < 0 && hashes.get(i).equals(hash)) {
+							offsets[i] = base + position;
+							remaining--;
+							matched = true;
+						}
+					}
+					if (matched) {
+						position += blockSize;
+						fresh = true;
+						continue;
+					}
+				}
+				if (position + blockSize == length) { // 已到文件末尾
+					break;
+				}
+				int out = buffer[position] & 0xff, next = buffer[position + blockSize] & 0xff; // 滚动窗口
+				a = (a - out + next) & 0xffff;
+				b = (b - blockSize * out + a) & 0xffff;
+				position++;
+			}
+		}
+		return offsets;
+	}
+
+	/**
+	 * 计算rsync滚动校验和,低16位为字节和,高16位为加权和
+	 *
+	 * @param data   数据
+	 * @param offset 起始位置
+	 * @param length 长度
+	 * @return 校验和
+	 */
+	@Contract(pure = true) protected static int checksum(byte[] data, int offset, int length) {
+		int a = 0, b = 0;
+		for (int i = 0; i < length; i++) {
+			int value = data[offset + i] & 0xff;
+			a += value;
+			b += (length - i) * value;
+		}
+		return (b & 0xffff) << 16 | (a & 0xffff);
+	}
+
+	@Contract(pure = true) protected static MessageDigest md5() {
+		try {
+			return MessageDigest.getInstance("MD5");
+		} catch (NoSuchAlgorithmException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+}
@@ -1,5 +1,6 @@
 package org.haic.often.Network;
 
+import org.haic.often.Multithread.MultiThreadUtil;
 import org.jetbrains.annotations.Contract;
 import org.jetbrains.annotations.NotNull;
 import org.jsoup.nodes.Document;
@@ -10,6 +11,8 @@ import java.io.InputStream;
 import java.net.Proxy;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
 
 /**
  * Connection 接口是一个方便的 HTTP 客户端和会话对象，用于从 Web 获取内容，并将它们解析为 Documents。
@@ -22,6 +25,8 @@ import java.util.Map;
  */
 public abstract class Connection {
 
+	protected static final ExecutorService ASYNC_EXECUTOR = MultiThreadUtil.newVirtualThreadPerTaskExecutor(); // 异步请求线程池
+
 	/**
 	 * 设置要获取的请求 URL，协议必须是 HTTP 或 HTTPS
 	 *
@@ -336,6 +341,16 @@ public abstract class Connection {
 	 */
 	@Contract(pure = true) public abstract Connection errorExit(boolean errorExit);
 
+	/**
+	 * 设置HTTP响应缓存,GET请求的200响应存入缓存,再次请求时在有效期内直接使用缓存,否则发送条件请求,服务器返回304时使用缓存的响应体
+	 * <p>
+	 * 可缓存的响应在返回前读取完整的响应体; 默认不使用缓存
+	 *
+	 * @param cache 响应缓存,通过 {@link HttpCache#open(String, long)} 获取,为null时不使用缓存
+	 * @return 此连接，用于链接
+	 */
+	@Contract(pure = true) public abstract Connection cache(HttpCache cache);
+
 	/**
 	 * 将请求作为 GET 执行，并解析结果
 	 *
@@ -357,4 +372,15 @@ public abstract class Connection {
 	 */
 	@Contract(pure = true) public abstract Response execute();
 
+	/**
+	 * 异步运行程序,获取 响应结果
+	 * <p>
+	 * 默认在共享线程池(支持时为虚拟线程)中运行 {@link #execute()},请求完成前不应修改此连接
+	 *
+	 * @return 响应结果的 CompletableFuture
+	 */
+	@Contract(pure = true) public CompletableFuture<Response> executeAsync() {
+		return CompletableFuture.supplyAsync(this::execute, ASYNC_EXECUTOR);
+	}
+
 }
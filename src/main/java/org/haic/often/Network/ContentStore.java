@@ -0,0 +1,251 @@
+package org.haic.often.Network;
+
+import org.haic.often.FilesUtils;
+import org.haic.often.Judge;
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * 按文件hash寻址的本地下载缓存
+ * <p>
+ * 下载前如果缓存中存在相同hash的文件,通过硬链接直接得到下载文件,文件系统不支持硬链接或跨分区时复制文件,无需访问网络; 下载完成并效验通过的文件以硬链接方式加入缓存,不占用额外的磁盘空间
+ * <p>
+ * 缓存总大小超过上限时,按最近最少使用的顺序删除缓存文件,已链接出去的下载文件不受影响; 缓存文件与下载文件共用同一份数据,下载文件被修改时缓存也会改变,因此默认在使用缓存前效验hash
+ * <p>
+ * 同一目录的缓存在JVM内共享同一个实例,重启后按文件修改时间恢复使用顺序
+ *
+ * @author haicdust
+ * @version 1.0
+ * @since 2022/10/2 10:26
+ */
+public class ContentStore {
+
+	protected static final Map<File, ContentStore> STORES = new ConcurrentHashMap<>(); // 已打开的缓存
+	protected static final Pattern HASH_PATTERN = Pattern.compile("[0-9a-f]{32,128}"); // 仅接受十六进制hash,避免路径穿越
+
+	protected final File root; // 缓存目录
+	protected final LinkedHashMap<String, Long> entries = new LinkedHashMap<>(16, 0.75f, true); // 缓存文件大小,按访问顺序排列
+	protected long maxSize; // 缓存大小上限
+	protected long size; // 缓存总大小
+	protected boolean verify = true; // 使用缓存前效验hash
+
+	protected ContentStore(@NotNull File root, long maxSize) {
+		this.root = root;
+		this.maxSize = maxSize;
+		File[] files = root.listFiles(File::isDirectory);
+		if (!Judge.isNull(files)) { // 按修改时间恢复使用顺序
+			Arrays.stream(files).map(l -> l.listFiles(File::isFile)).filter(Objects::nonNull).flatMap(Arrays::stream).filter(l -> HASH_PATTERN.matcher(l.getName()).matches())
+					.sorted(Comparator.comparingLong(File::lastModified)).forEach(l -> {
+						entries.put(l.getName(), l.length());
+						size += l.length();
+					});
+		}
+	}
+
+	/**
+	 * 打开指定目录的缓存,同一目录返回同一个实例,大小上限以最后一次设置为准
+	 *
+	 * @param folderPath 缓存目录
+	 * @param maxSize    缓存大小上限(字节)
+	 * @return 缓存
+	 */
+	@Contract(pure = true) public static ContentStore open(@NotNull String folderPath, long maxSize) {
+		return open(new File(folderPath), maxSize);
+	}
+
+	/**
+	 * 打开指定目录的缓存,同一目录返回同一个实例,大小上限以最后一次设置为准
+	 *
+	 * @param folder  缓存目录
+	 * @param maxSize 缓存大小上限(字节)
+	 * @return 缓存
+	 */
+	@Contract(pure = true) public static ContentStore open(@NotNull File folder, long maxSize) {
+		if (maxSize < 0) {
+			throw new RuntimeException("maxSize Less than 0");
+		}
+		return STORES.computeIfAbsent(folder.getAbsoluteFile(), l -> new ContentStore(l, maxSize)).maxSize(maxSize);
+	}
+
+	/**
+	 * 设置缓存大小上限,超出时立即删除最近最少使用的缓存文件
+	 *
+	 * @param maxSize 缓存大小上限(字节)
+	 * @return 此缓存
+	 */
+	@Contract(pure = true) public synchronized ContentStore maxSize(long maxSize) {
+		if (maxSize < 0) {
+			throw new RuntimeException("maxSize Less than 0");
+		}
+		this.maxSize = maxSize;
+		evict();
+		return this;
+	}
+
+	/**
+	 * 设置使用缓存前是否效验hash,默认效验
+	 *
+	 * @param verify 是否效验
+	 * @return 此缓存
+	 */
+	@Contract(pure = true) public synchronized ContentStore verify(boolean verify) {
+		this.verify = verify;
+		return this;
+	}
+
+	/**
+	 * 查询缓存中是否存在指定hash的文件
+	 *
+	 * @param hash hash值
+	 * @return 是否存在
+	 */
+	@Contract(pure = true) public synchronized boolean contains(@NotNull String hash) {
+		return entries.containsKey(hash.toLowerCase());
+	}
+
+	/**
+	 * 获取缓存总大小
+	 *
+	 * @return 字节数
+	 */
+	@Contract(pure = true) public synchronized long size() {
+		return size;
+	}
+
+	/**
+	 * 从缓存中获取指定hash的文件,通过硬链接或复制生成目标文件
+	 *
+	 * @param hash   hash值
+	 * @param target 目标文件,必须不存在
+	 * @return 是否成功, 缓存中不存在或效验失败时为false
+	 */
+	@Contract(pure = true) public boolean fetch(@NotNull String hash, @NotNull File target) {
+		hash = hash.toLowerCase();
+		File file;
+		boolean verify;
+		synchronized (this) {
+			if (!entries.containsKey(hash) || target.exists()) {
+				return false;
+			}
+			file = file(hash);
+			verify = this.verify;
+		}
+		if (verify && !FilesUtils.hashGet(file, hash).equals(hash)) { // 缓存文件已损坏或被修改
+			remove(hash);
+			return false;
+		}
+		File parent = target.getAbsoluteFile().getParentFile();
+		if (!Judge.isNull(parent)) {
+			FilesUtils.createFolder(parent);
+		}
+		return link(file, target);
+	}
+
+	/**
+	 * 将已下载并效验的文件加入缓存,文件大于缓存大小上限时不加入
+	 *
+	 * @param hash   文件hash值
+	 * @param source 文件
+	 * @return 是否加入缓存
+	 */
+	@Contract(pure = true) public boolean put(@NotNull String hash, @NotNull File source) {
+		hash = hash.toLowerCase();
+		long length = source.length();
+		synchronized (this) {
+			if (!HASH_PATTERN.matcher(hash).matches() || length > maxSize || !source.isFile()) {
+				return false;
+			} else if (entries.containsKey(hash)) {
+				entries.get(hash); // 更新使用顺序
+				return true;
+			}
+		}
+		File file = file(hash);
+		File temp = new File(file.getPath() + "." + Thread.currentThread().getId() + ".tmp");
+		FilesUtils.createFolder(file.getParentFile());
+		if (!link(source, temp)) {
+			return false;
+		}
+		try {
+			Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			temp.delete();
+			return false;
+		}
+		synchronized (this) {
+			if (Judge.isNull(entries.put(hash, length))) {
+				size += length;
+			}
+			evict();
+		}
+		return true;
+	}
+
+	/**
+	 * 删除指定hash的缓存文件
+	 *
+	 * @param hash hash值
+	 * @return 是否存在并删除
+	 */
+	@Contract(pure = true) public synchronized boolean remove(@NotNull String hash) {
+		hash = hash.toLowerCase();
+		Long length = entries.remove(hash);
+		if (Judge.isNull(length)) {
+			return false;
+		}
+		size -= length;
+		return file(hash).delete();
+	}
+
+	/**
+	 * 删除最近最少使用的缓存文件,直至总大小不超过上限
+	 */
+	@Contract(pure = true) protected synchronized void evict() {
+		for (Iterator<Map.Entry<String, Long>> iterator = entries.entrySet().iterator(); size > maxSize && iterator.hasNext(); ) {
+			Map.Entry<String, Long> entry = iterator.next();
+			iterator.remove();
+			size -= entry.getValue();
+			file(entry.getKey()).delete();
+		}
+	}
+
+	/**
+	 * 获取hash对应的缓存文件,以hash前两位作为子目录,避免单个目录文件过多
+	 *
+	 * @param hash hash值
+	 * @return 缓存文件
+	 */
+	@Contract(pure = true) protected File file(@NotNull String hash) {
+		return new File(new File(root, hash.substring(0, 2)), hash);
+	}
+
+	/**
+	 * 创建硬链接,失败时复制文件
+	 *
+	 * @param source 源文件
+	 * @param target 目标文件
+	 * @return 是否成功
+	 */
+	@Contract(pure = true) protected static boolean link(@NotNull File source, @NotNull File target) {
+		try {
+			Files.createLink(target.toPath(), source.toPath());
+			return true;
+		} catch (IOException | UnsupportedOperationException e) {
+			try {
+				Files.copy(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+				return true;
+			} catch (IOException ex) {
+				target.delete();
+				return false;
+			}
+		}
+	}
+
+}
@@ -0,0 +1,392 @@
+package org.haic.often.Network;
+
+import org.haic.often.FilesUtils;
+import org.haic.often.Judge;
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 下载管理器,按照优先级调度多个 {@link NetworkUtil} 下载任务
+ * <p>
+ * 所有任务共用全局连接数和每个域名的连接数限制,每个分块请求都需要先获取连接许可,因此无论同时运行多少个任务,对服务器的连接数都不会超过限制
+ * <p>
+ * 下载线程同样由所有任务共用的许可限制,总数不超过全局最大连接数,许可不足时每个任务只保留一个下载线程,在其它任务的线程结束后再补足
+ * <p>
+ * 任务可以暂停,继续和取消,暂停时保留已下载的部分和断点续传信息,继续时从断点处下载
+ *
+ * @author haicdust
+ * @version 1.0
+ * @since 2022/9/27 20:05
+ */
+public class DownloadManager {
+
+	protected final int MAX_CONNECTIONS; // 全局最大连接数
+	protected final Semaphore connections; // 全局连接许可
+	protected final Semaphore running; // 同时运行的任务数,每个任务至少需要一个连接
+	protected final Semaphore threads; // 所有任务共用的下载线程许可
+	protected final Map<String, Integer> hostLimits = new ConcurrentHashMap<>(); // 指定域名的最大连接数
+	protected final Map<String, Semaphore> hosts = new ConcurrentHashMap<>(); // 域名连接许可
+	protected final PriorityBlockingQueue<Task> queue = new PriorityBlockingQueue<>(); // 等待运行的任务
+	protected final Set<Task> tasks = ConcurrentHashMap.newKeySet(); // 未结束的任务
+	protected final ExecutorService executor = Executors.newCachedThreadPool(); // 任务线程池
+	protected final AtomicLong sequence = new AtomicLong(); // 提交顺序,优先级相同时先提交先运行
+	protected final Thread dispatcher; // 任务调度线程
+	protected int HOST_LIMIT; // 默认每个域名最大连接数
+	protected volatile boolean closed;
+
+	/**
+	 * 创建下载管理器
+	 *
+	 * @param maxConnections 全局最大连接数
+	 */
+	public DownloadManager(int maxConnections) {
+		if (maxConnections < 1) {
+			throw new RuntimeException("maxConnections Less than 1");
+		}
+		this.MAX_CONNECTIONS = this.HOST_LIMIT = maxConnections;
+		this.connections = new Semaphore(maxConnections, true);
+		this.running = new Semaphore(maxConnections);
+		this.threads = new Semaphore(maxConnections);
+		this.dispatcher = new Thread(this::dispatch, "DownloadManager-dispatcher");
+		this.dispatcher.setDaemon(true);
+		this.dispatcher.start();
+	}
+
+	/**
+	 * 设置默认每个域名最大连接数,仅对之后首次出现的域名生效,默认等于全局最大连接数
+	 *
+	 * @param limit 最大连接数
+	 * @return 此下载管理器
+	 */
+	@Contract(pure = true) public DownloadManager hostLimit(int limit) {
+		if (limit < 1) {
+			throw new RuntimeException("limit Less than 1");
+		}
+		this.HOST_LIMIT = limit;
+		return this;
+	}
+
+	/**
+	 * 设置指定域名最大连接数,需要在提交该域名的任务之前设置
+	 *
+	 * @param host  域名
+	 * @param limit 最大连接数
+	 * @return 此下载管理器
+	 */
+	@Contract(pure = true) public DownloadManager hostLimit(@NotNull String host, int limit) {
+		if (limit < 1) {
+			throw new RuntimeException("limit Less than 1");
+		}
+		hostLimits.put(host.toLowerCase(), limit);
+		return this;
+	}
+
+	/**
+	 * 提交下载任务,下载到系统默认下载路径,优先级为0
+	 *
+	 * @param conn 下载连接
+	 * @return 任务
+	 */
+	@Contract(pure = true) public Task submit(@NotNull NetworkUtil.Connection conn) {
+		return submit(conn, FilesUtils.getDownloadsPath(), 0);
+	}
+
+	/**
+	 * 提交下载任务
+	 *
+	 * @param conn       下载连接
+	 * @param folderPath 文件存放目录
+	 * @param priority   优先级,数值越大越先运行
+	 * @return 任务
+	 */
+	@Contract(pure = true) public Task submit(@NotNull NetworkUtil.Connection conn, @NotNull String folderPath, int priority) {
+		return submit(conn, new File(folderPath), priority);
+	}
+
+	/**
+	 * 提交下载任务
+	 *
+	 * @param conn     下载连接
+	 * @param folder   文件存放目录
+	 * @param priority 优先级,数值越大越先运行
+	 * @return 任务
+	 */
+	@Contract(pure = true) public Task submit(@NotNull NetworkUtil.Connection conn, @NotNull File folder, int priority) {
+		if (closed) {
+			throw new RuntimeException("DownloadManager is shutdown");
+		}
+		NetworkUtil.HttpConnection connection = (NetworkUtil.HttpConnection) conn;
+		String host = URIUtils.getDomain(connection.url).toLowerCase();
+		Semaphore hostPermits = hosts.computeIfAbsent(host, h -> new Semaphore(Math.min(MAX_CONNECTIONS, hostLimits.getOrDefault(h, HOST_LIMIT)), true));
+		connection.permits = List.of(hostPermits, connections); // 先获取域名许可,避免等待域名许可时占用全局许可
+		connection.threads = threads;
+		Task task = new Task(connection, folder, priority);
+		tasks.add(task);
+		queue.add(task);
+		return task;
+	}
+
+	/**
+	 * 关闭下载管理器,所有未结束的任务被暂停且不能继续,结果为null,已下载的部分可以通过session文件继续下载
+	 */
+	@Contract(pure = true) public void shutdown() {
+		closed = true;
+		dispatcher.interrupt();
+		for (Task task : tasks) {
+			task.pause();
+			if (task.state() == State.PAUSED) {
+				task.future.complete(null);
+			}
+		}
+		tasks.clear();
+		executor.shutdown();
+	}
+
+	/**
+	 * 调度线程,按照优先级取出任务运行,运行中的任务数不超过全局最大连接数
+	 */
+	@Contract(pure = true) protected void dispatch() {
+		try {
+			while (!closed) {
+				running.acquire();
+				Task task = queue.take();
+				try {
+					executor.execute(() -> {
+						try {
+							task.run();
+						} finally {
+							running.release();
+						}
+					});
+				} catch (RejectedExecutionException e) {
+					running.release();
+				}
+			}
+		} catch (InterruptedException e) {
+			// 下载管理器已关闭
+		}
+	}
+
+	/**
+	 * 任务状态
+	 */
+	public enum State {
+		/**
+		 * 等待运行
+		 */
+		QUEUED,
+		/**
+		 * 正在下载
+		 */
+		RUNNING,
+		/**
+		 * 已暂停
+		 */
+		PAUSED,
+		/**
+		 * 已取消
+		 */
+		CANCELLED,
+		/**
+		 * 已结束,下载成功或失败
+		 */
+		DONE
+	}
+
+	/**
+	 * 下载任务,用于暂停,继续,取消和获取下载结果
+	 *
+	 * @author haicdust
+	 * @version 1.0
+	 * @since 2022/9/27 20:05
+	 */
+	public class Task implements Comparable<Task> {
+
+		protected final NetworkUtil.HttpConnection conn;
+		protected final File folder;
+		protected final int priority;
+		protected final long order = sequence.getAndIncrement();
+		protected final CompletableFuture<NetworkUtil.Response> future = new CompletableFuture<>();
+		protected State state = State.QUEUED;
+		protected boolean active; // 下载线程是否正在运行
+
+		protected Task(@NotNull NetworkUtil.HttpConnection conn, @NotNull File folder, int priority) {
+			this.conn = conn;
+			this.folder = folder;
+			this.priority = priority;
+		}
+
+		/**
+		 * 运行下载,结束后根据任务状态完成任务或重新排队
+		 */
+		@Contract(pure = true) protected void run() {
+			synchronized (this) {
+				if (state != State.QUEUED) {
+					return;
+				}
+				state = State.RUNNING;
+				active = true;
+			}
+			NetworkUtil.Response res = null;
+			Throwable error = null;
+			try {
+				res = conn.downloadFile(folder); // 停止标志在重新排队时已重置,不覆盖运行后到达的暂停或取消
+			} catch (Throwable e) {
+				error = e;
+			}
+			synchronized (this) {
+				active = false;
+				switch (state) {
+				case RUNNING -> {
+					state = State.DONE;
+					tasks.remove(this);
+					if (Judge.isNull(error)) {
+						future.complete(res);
+					} else {
+						future.completeExceptionally(error);
+					}
+				}
+				case QUEUED -> requeue(); // 停止过程中被继续
+				case CANCELLED -> {
+					tasks.remove(this);
+					deleteFiles();
+					future.complete(res);
+				}
+				default -> {
+					// 已暂停,等待继续
+				}
+				}
+			}
+		}
+
+		/**
+		 * 暂停任务,正在下载时停止所有连接并保留断点续传信息
+		 *
+		 * @return 是否暂停成功
+		 */
+		@Contract(pure = true) public synchronized boolean pause() {
+			switch (state) {
+			case QUEUED -> queue.remove(this);
+			case RUNNING -> conn.stop();
+			default -> {
+				return false;
+			}
+			}
+			state = State.PAUSED;
+			return true;
+		}
+
+		/**
+		 * 继续已暂停的任务,任务将按照优先级重新排队
+		 *
+		 * @return 是否继续成功
+		 */
+		@Contract(pure = true) public synchronized boolean resume() {
+			if (state != State.PAUSED || closed) {
+				return false;
+			}
+			state = State.QUEUED;
+			if (!active) { // 正在停止的任务,由下载线程在停止后重新排队
+				requeue();
+			}
+			return true;
+		}
+
+		/**
+		 * 取消任务并删除已下载的部分和断点续传信息
+		 *
+		 * @return 是否取消成功
+		 */
+		@Contract(pure = true) public synchronized boolean cancel() {
+			if (state == State.DONE || state == State.CANCELLED) {
+				return false;
+			}
+			queue.remove(this);
+			tasks.remove(this);
+			state = State.CANCELLED;
+			if (active) {
+				conn.stop();
+			} else {
+				deleteFiles();
+				future.complete(null);
+			}
+			return true;
+		}
+
+		/**
+		 * 获取任务状态
+		 *
+		 * @return 任务状态
+		 */
+		@Contract(pure = true) public synchronized State state() {
+			return state;
+		}
+
+		/**
+		 * 获取任务优先级
+		 *
+		 * @return 优先级
+		 */
+		@Contract(pure = true) public int priority() {
+			return priority;
+		}
+
+		/**
+		 * 获取下载连接
+		 *
+		 * @return 下载连接
+		 */
+		@Contract(pure = true) public NetworkUtil.Connection connection() {
+			return conn;
+		}
+
+		/**
+		 * 等待任务结束并获取下载结果,暂停的任务会一直等待至继续后结束
+		 *
+		 * @return 下载结果,任务在开始前被取消或下载管理器关闭时为null
+		 */
+		@Contract(pure = true) public NetworkUtil.Response get() {
+			return future.join();
+		}
+
+		/**
+		 * 获取任务结果的Future对象
+		 *
+		 * @return CompletableFuture对象
+		 */
+		@Contract(pure = true) public CompletableFuture<NetworkUtil.Response> future() {
+			return future;
+		}
+
+		/**
+		 * 重新加入等待队列
+		 */
+		@Contract(pure = true) protected void requeue() {
+			conn.reset(this); // 暂停和取消同样持有任务的监视器
+			queue.add(this);
+		}
+
+		/**
+		 * 删除已下载的部分和断点续传信息
+		 */
+		@Contract(pure = true) protected void deleteFiles() {
+			if (!Judge.isNull(conn.storage)) {
+				conn.storage.delete();
+				new File(conn.storage + conn.SESSION_SUFFIX).delete();
+				new File(conn.storage + conn.JOURNAL_SUFFIX).delete();
+			}
+		}
+
+		@Override public int compareTo(@NotNull Task task) {
+			return priority == task.priority ? Long.compare(order, task.order) : Integer.compare(task.priority, priority);
+		}
+	}
+
+}
@@ -0,0 +1,531 @@
+package org.haic.often.Network;
+
+import com.alibaba.fastjson.JSONObject;
+import org.brotli.dec.BrotliInputStream;
+import org.haic.often.FilesUtils;
+import org.haic.often.Judge;
+import org.haic.often.StreamUtils;
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * 基于条件请求的HTTP响应缓存
+ * <p>
+ * 缓存GET请求的200响应,保存响应体和验证信息(ETag, Last-Modified, Cache-Control); 再次请求时,缓存在 Cache-Control: max-age 或 Expires 的有效期内直接使用,否则携带 If-None-Match 和 If-Modified-Since 请求头发送条件请求,服务器返回304时使用缓存的响应体
+ * <p>
+ * 响应体和响应头保存在磁盘上,内存中只保留索引,缓存总大小超过上限时按最近最少使用的顺序删除; 同一目录的缓存在JVM内共享同一个实例,重启后按最后验证时间恢复使用顺序
+ * <p>
+ * 响应体以解压后的形式保存,不保存 content-encoding 和 content-length 响应头,不同的连接工具可以共用同一缓存目录
+ * <p>
+ * 缓存键为请求URL和 authorization 请求头,不包含cookies,仅通过cookies区分账号时,不同账号应使用不同的缓存目录; 带有 Cache-Control: no-store 或 Vary(accept-encoding 除外)的响应不缓存, Set-Cookie 响应头不会被缓存
+ *
+ * @author haicdust
+ * @version 1.0
+ * @since 2022/10/3 10:12
+ */
+public class HttpCache {
+
+	protected static final String META_SUFFIX = ".json"; // 响应头文件后缀
+	protected static final Map<File, HttpCache> CACHES = new ConcurrentHashMap<>(); // 已打开的缓存
+	protected static final Pattern MAX_AGE = Pattern.compile("max-age\\s*=\\s*\"?(\\d+)", Pattern.CASE_INSENSITIVE);
+	protected static final Set<String> VALIDATORS = Set.of("etag", "last-modified", "cache-control", "expires", "date", "vary"); // 304响应中需要更新的响应头
+	protected static final Set<String> ENCODING_HEADERS = Set.of("content-encoding", "content-length"); // 不适用于解压后响应体的响应头
+
+	protected final File root; // 缓存目录
+	protected final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true); // 缓存索引,按访问顺序排列
+	protected long maxSize; // 缓存大小上限
+	protected long size; // 缓存总大小
+
+	protected HttpCache(@NotNull File root, long maxSize) {
+		this.root = root;
+		this.maxSize = maxSize;
+		File[] folders = root.listFiles(File::isDirectory);
+		if (!Judge.isNull(folders)) { // 按最后验证时间恢复使用顺序
+			Arrays.stream(folders).map(l -> l.listFiles((dir, name) -> name.endsWith(META_SUFFIX))).filter(Objects::nonNull).flatMap(Arrays::stream).map(this::load)
+					.filter(Objects::nonNull).sorted(Comparator.comparingLong(Entry::time)).forEach(l -> {
+						entries.put(l.id, l);
+						size += l.length;
+					});
+		}
+	}
+
+	/**
+	 * 打开指定目录的缓存,同一目录返回同一个实例,大小上限以最后一次设置为准
+	 *
+	 * @param folderPath 缓存目录
+	 * @param maxSize    缓存大小上限(字节)
+	 * @return 缓存
+	 */
+	@Contract(pure = true) public static HttpCache open(@NotNull String folderPath, long maxSize) {
+		return open(new File(folderPath), maxSize);
+	}
+
+	/**
+	 * 打开指定目录的缓存,同一目录返回同一个实例,大小上限以最后一次设置为准
+	 *
+	 * @param folder  缓存目录
+	 * @param maxSize 缓存大小上限(字节)
+	 * @return 缓存
+	 */
+	@Contract(pure = true) public static HttpCache open(@NotNull File folder, long maxSize) {
+		if (maxSize < 0) {
+			throw new RuntimeException("maxSize Less than 0");
+		}
+		return CACHES.computeIfAbsent(folder.getAbsoluteFile(), l -> new HttpCache(l, maxSize)).maxSize(maxSize);
+	}
+
+	/**
+	 * 设置缓存大小上限,超出时立即删除最近最少使用的缓存
+	 *
+	 * @param maxSize 缓存大小上限(字节)
+	 * @return 此缓存
+	 */
+	@Contract(pure = true) public synchronized HttpCache maxSize(long maxSize) {
+		if (maxSize < 0) {
+			throw new RuntimeException("maxSize Less than 0");
+		}
+		this.maxSize = maxSize;
+		evict();
+		return this;
+	}
+
+	/**
+	 * 获取缓存总大小
+	 *
+	 * @return 字节数
+	 */
+	@Contract(pure = true) public synchronized long size() {
+		return size;
+	}
+
+	/**
+	 * 生成缓存键
+	 *
+	 * @param url  请求URL,包含请求参数
+	 * @param auth authorization 请求头,可以为null
+	 * @return 缓存键
+	 */
+	@Contract(pure = true) public static String key(@NotNull String url, String auth) {
+		return Judge.isEmpty(auth) ? url : url + "\n" + auth;
+	}
+
+	/**
+	 * 获取缓存
+	 *
+	 * @param key 缓存键
+	 * @return 缓存, 不存在时为null
+	 */
+	@Contract(pure = true) public synchronized Entry get(@NotNull String key) {
+		String id = id(key);
+		Entry entry = entries.get(id);
+		if (!Judge.isNull(entry) && !entry.file.isFile()) { // 缓存文件已被删除
+			remove(id, entry);
+			return null;
+		}
+		return entry;
+	}
+
+	/**
+	 * 将200响应存入缓存,不可缓存或大于缓存大小上限的响应不存入,并删除同一缓存键的旧缓存
+	 *
+	 * @param key     缓存键
+	 * @param url     响应URL
+	 * @param headers 响应头
+	 * @param body    响应体
+	 * @return 缓存, 未存入缓存时仍可用于读取响应头
+	 */
+	@Contract(pure = true) public synchronized Entry put(@NotNull String key, @NotNull String url, @NotNull Map<String, String> headers, byte[] body) {
+		String id = id(key);
+		Map<String, String> values = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+		values.putAll(headers);
+		values.remove("set-cookie");
+		decoded(values);
+		Entry entry = new Entry(id, url, values, body.length, System.currentTimeMillis(), file(id));
+		Entry old = entries.get(id);
+		if (!Judge.isNull(old)) {
+			remove(id, old);
+		}
+		if (!cacheable(values) || body.length > maxSize) {
+			return entry;
+		}
+		File temp = new File(entry.file.getPath() + "." + Thread.currentThread().getId() + ".tmp");
+		try {
+			FilesUtils.createFolder(entry.file.getParentFile());
+			Files.write(temp.toPath(), body);
+			Files.move(temp.toPath(), entry.file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			write(entry);
+		} catch (IOException e) {
+			temp.delete();
+			entry.file.delete();
+			return entry;
+		}
+		entries.put(id, entry);
+		size += entry.length;
+		evict();
+		return entry;
+	}
+
+	/**
+	 * 按 content-encoding 解压响应体,存入缓存前使用,缓存统一保存解压后的响应体
+	 *
+	 * @param body     响应体
+	 * @param encoding 响应体编码,为null或不支持的编码时不解压
+	 * @return 解压后的响应体, 解压失败时为null
+	 */
+	@Contract(pure = true) public static byte[] decode(byte[] body, String encoding) {
+		if (Judge.isNull(body) || Judge.isEmpty(encoding)) {
+			return body;
+		}
+		InputStream in = new ByteArrayInputStream(body);
+		try (InputStream decoded = switch (encoding.toLowerCase()) {
+			case "gzip" -> new GZIPInputStream(in);
+			case "deflate" -> new InflaterInputStream(in, new Inflater(true));
+			case "br" -> new BrotliInputStream(in);
+			default -> in;
+		}) {
+			return StreamUtils.stream(decoded).toByteArray();
+		} catch (IOException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * 移除不适用于解压后响应体的响应头(content-encoding, content-length)
+	 *
+	 * @param headers 响应头,忽略大小写或名称为小写
+	 * @return 移除后的响应头
+	 */
+	@Contract(pure = true) public static Map<String, String> decoded(@NotNull Map<String, String> headers) {
+		ENCODING_HEADERS.forEach(headers::remove);
+		return headers;
+	}
+
+	/**
+	 * 服务器返回304时更新缓存的验证信息和验证时间
+	 *
+	 * @param entry   缓存
+	 * @param headers 304响应的响应头
+	 * @return 更新后的缓存
+	 */
+	@Contract(pure = true) public synchronized Entry refresh(@NotNull Entry entry, @NotNull Map<String, String> headers) {
+		Map<String, String> values = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+		values.putAll(entry.headers);
+		for (Map.Entry<String, String> header : headers.entrySet()) {
+			if (!Judge.isNull(header.getKey()) && VALIDATORS.contains(header.getKey().toLowerCase())) {
+				values.put(header.getKey(), header.getValue());
+			}
+		}
+		Entry refreshed = new Entry(entry.id, entry.url, values, entry.length, System.currentTimeMillis(), entry.file);
+		if (entries.get(entry.id) == entry) {
+			try {
+				write(refreshed);
+				entries.put(entry.id, refreshed);
+			} catch (IOException e) {
+				remove(entry.id, entry);
+			}
+		}
+		return refreshed;
+	}
+
+	/**
+	 * 删除指定缓存键的缓存
+	 *
+	 * @param key 缓存键
+	 * @return 是否存在并删除
+	 */
+	@Contract(pure = true) public synchronized boolean remove(@NotNull String key) {
+		String id = id(key);
+		Entry entry = entries.get(id);
+		return !Judge.isNull(entry) && remove(id, entry);
+	}
+
+	/**
+	 * 删除所有缓存
+	 */
+	@Contract(pure = true) public synchronized void clear() {
+		for (Map.Entry<String, Entry> entry : new ArrayList<>(entries.entrySet())) {
+			remove(entry.getKey(), entry.getValue());
+		}
+	}
+
+	/**
+	 * 判断响应是否可以缓存,需要带有验证信息或有效期,且不带有 no-store 和 Vary(accept-encoding 除外)
+	 *
+	 * @param headers 响应头,名称忽略大小写
+	 * @return 是否可以缓存
+	 */
+	@Contract(pure = true) public static boolean cacheable(@NotNull Map<String, String> headers) {
+		Map<String, String> values = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+		values.putAll(headers);
+		String control = values.getOrDefault("cache-control", "").toLowerCase();
+		if (control.contains("no-store")) {
+			return false;
+		}
+		String vary = values.get("vary");
+		if (!Judge.isEmpty(vary)) {
+			for (String name : vary.split("[,;]")) {
+				if (!name.isBlank() && !name.trim().equalsIgnoreCase("accept-encoding")) {
+					return false;
+				}
+			}
+		}
+		return values.containsKey("etag") || values.containsKey("last-modified") || maxAge(control) > 0 || values.containsKey("expires");
+	}
+
+	/**
+	 * 删除最近最少使用的缓存,直至总大小不超过上限
+	 */
+	@Contract(pure = true) protected synchronized void evict() {
+		for (Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator(); size > maxSize && iterator.hasNext(); ) {
+			Entry entry = iterator.next().getValue();
+			iterator.remove();
+			size -= entry.length;
+			entry.file.delete();
+			meta(entry.file).delete();
+		}
+	}
+
+	@Contract(pure = true) protected synchronized boolean remove(@NotNull String id, @NotNull Entry entry) {
+		entries.remove(id);
+		size -= entry.length;
+		meta(entry.file).delete();
+		return entry.file.delete();
+	}
+
+	/**
+	 * 写入响应头文件
+	 *
+	 * @param entry 缓存
+	 * @throws IOException 如果发生 I/O 异常
+	 */
+	@Contract(pure = true) protected void write(@NotNull Entry entry) throws IOException {
+		JSONObject info = new JSONObject(true);
+		info.put("url", entry.url);
+		info.put("time", entry.time);
+		info.put("length", entry.length);
+		info.put("headers", entry.headers);
+		File meta = meta(entry.file);
+		File temp = new File(meta.getPath() + "." + Thread.currentThread().getId() + ".tmp");
+		try {
+			Files.writeString(temp.toPath(), info.toJSONString());
+			Files.move(temp.toPath(), meta.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			temp.delete();
+			throw e;
+		}
+	}
+
+	/**
+	 * 读取响应头文件,响应体文件不存在或大小不一致时删除
+	 *
+	 * @param meta 响应头文件
+	 * @return 缓存, 读取失败时为null
+	 */
+	@Contract(pure = true) protected Entry load(@NotNull File meta) {
+		String id = meta.getName().substring(0, meta.getName().length() - META_SUFFIX.length());
+		File file = new File(meta.getParentFile(), id);
+		try {
+			JSONObject info = JSONObject.parseObject(Files.readString(meta.toPath()));
+			Map<String, String> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+			info.getJSONObject("headers").forEach((key, value) -> headers.put(key, String.valueOf(value)));
+			Entry entry = new Entry(id, info.getString("url"), headers, info.getLongValue("length"), info.getLongValue("time"), file);
+			if (file.isFile() && file.length() == entry.length && !headers.containsKey("content-encoding")) { // 旧版本缓存可能保存了未解压的响应体
+				return entry;
+			}
+		} catch (Exception e) {
+			// 响应头文件已损坏
+		}
+		meta.delete();
+		file.delete();
+		return null;
+	}
+
+	/**
+	 * 获取缓存键对应的响应体文件,以缓存键md5的前两位作为子目录
+	 *
+	 * @param id 缓存键的md5
+	 * @return 响应体文件
+	 */
+	@Contract(pure = true) protected File file(@NotNull String id) {
+		return new File(new File(root, id.substring(0, 2)), id);
+	}
+
+	@Contract(pure = true) protected static File meta(@NotNull File file) {
+		return new File(file.getPath() + META_SUFFIX);
+	}
+
+	@Contract(pure = true) protected static String id(@NotNull String key) {
+		try {
+			return HexFormat.of().formatHex(MessageDigest.getInstance("MD5").digest(key.getBytes(StandardCharsets.UTF_8)));
+		} catch (NoSuchAlgorithmException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * 获取 Cache-Control 中的 max-age
+	 *
+	 * @param control Cache-Control 响应头
+	 * @return 秒数, 不存在时为-1
+	 */
+	@Contract(pure = true) protected static long maxAge(@NotNull String control) {
+		Matcher matcher = MAX_AGE.matcher(control);
+		try {
+			return matcher.find() ? Long.parseLong(matcher.group(1)) : -1;
+		} catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+
+	/**
+	 * 缓存的响应
+	 *
+	 * @author haicdust
+	 * @version 1.0
+	 * @since 2022/10/3 10:12
+	 */
+	public static class Entry {
+
+		protected final String id; // 缓存键的md5
+		protected final String url; // 响应URL
+		protected final Map<String, String> headers; // 响应头,名称忽略大小写
+		protected final long length; // 响应体大小
+		protected final long time; // 存入或最后验证的时间
+		protected final File file; // 响应体文件
+
+		protected Entry(@NotNull String id, @NotNull String url, @NotNull Map<String, String> headers, long length, long time, @NotNull File file) {
+			this.id = id;
+			this.url = url;
+			this.headers = Collections.unmodifiableMap(headers);
+			this.length = length;
+			this.time = time;
+			this.file = file;
+		}
+
+		/**
+		 * 获取响应URL
+		 *
+		 * @return 响应URL
+		 */
+		@Contract(pure = true) public String url() {
+			return url;
+		}
+
+		/**
+		 * 获取响应头的值
+		 *
+		 * @param name 响应头名称,忽略大小写
+		 * @return 响应头的值
+		 */
+		@Contract(pure = true) public String header(@NotNull String name) {
+			return headers.get(name);
+		}
+
+		/**
+		 * 获取响应头
+		 *
+		 * @return 响应头,不可修改
+		 */
+		@Contract(pure = true) public Map<String, String> headers() {
+			return headers;
+		}
+
+		/**
+		 * 获取响应体大小
+		 *
+		 * @return 字节数
+		 */
+		@Contract(pure = true) public long length() {
+			return length;
+		}
+
+		/**
+		 * 获取存入或最后验证的时间
+		 *
+		 * @return 毫秒时间戳
+		 */
+		@Contract(pure = true) public long time() {
+			return time;
+		}
+
+		/**
+		 * 判断缓存是否在有效期内,有效期内无需发送请求
+		 * <p>
+		 * 有效期由 Cache-Control: max-age 决定,不存在时由 Expires 与 Date 之差决定,带有 no-cache 或没有有效期时每次都需要验证
+		 *
+		 * @return 是否在有效期内
+		 */
+		@Contract(pure = true) public boolean fresh() {
+			String control = headers.getOrDefault("cache-control", "").toLowerCase();
+			if (control.contains("no-cache")) {
+				return false;
+			}
+			long maxAge = maxAge(control);
+			if (maxAge >= 0) {
+				return System.currentTimeMillis() - time < maxAge * 1000;
+			}
+			String expires = headers.get("expires");
+			if (Judge.isEmpty(expires)) {
+				return false;
+			}
+			try {
+				long expiresTime = ZonedDateTime.parse(expires, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+				String date = headers.get("date");
+				long dateTime = Judge.isEmpty(date) ? time : ZonedDateTime.parse(date, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+				return System.currentTimeMillis() - time < expiresTime - dateTime;
+			} catch (DateTimeParseException e) {
+				return false; // 无效的日期视为已过期
+			}
+		}
+
+		/**
+		 * 获取条件请求的请求头
+		 *
+		 * @return If-None-Match 和 If-Modified-Since 请求头
+		 */
+		@Contract(pure = true) public Map<String, String> conditions() {
+			Map<String, String> conditions = new HashMap<>();
+			String etag = headers.get("etag");
+			if (!Judge.isEmpty(etag)) {
+				conditions.put("if-none-match", etag);
+			}
+			String lastModified = headers.get("last-modified");
+			if (!Judge.isEmpty(lastModified)) {
+				conditions.put("if-modified-since", lastModified);
+			}
+			return conditions;
+		}
+
+		/**
+		 * 获取响应体输入流
+		 *
+		 * @return 输入流
+		 * @throws IOException 缓存文件已被删除
+		 */
+		@Contract(pure = true) public InputStream bodyStream() throws IOException {
+			return new FileInputStream(file);
+		}
+	}
+
+}
@@ -36,6 +36,7 @@ import org.jsoup.nodes.Document;
 import org.jsoup.parser.Parser;
 
 import javax.net.ssl.SSLContext;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.UnsupportedEncodingException;
@@ -104,6 +105,7 @@ public class HttpClientUtil {
 		protected CloseableHttpClient httpclient;
 		protected HttpClientBuilder httpClientBuilder = HttpClients.custom();
 		protected HttpEntity entity;
+		protected HttpCache cache; // 响应缓存
 
 		protected HttpConnection(@NotNull String url) {
 			Logger.getLogger("org.apache.http").setLevel(Level.OFF); // 关闭日志
@@ -302,6 +304,11 @@ public class HttpClientUtil {
 			return this;
 		}
 
+		@Contract(pure = true) public Connection cache(HttpCache cache) {
+			this.cache = cache;
+			return this;
+		}
+
 		@Contract(pure = true) public Document get() {
 			return method(Method.GET).execute().parse();
 		}
@@ -358,6 +365,15 @@ public class HttpClientUtil {
 			// 设置cookies
 			request.setHeader("cookie", cookies.entrySet().stream().map(l -> l.getKey() + "=" + l.getValue()).collect(Collectors.joining("; ")));
 
+			// 缓存在有效期内时直接使用,否则发送条件请求
+			String key = method == Method.GET && !Judge.isNull(cache) ? HttpCache.key(request.getURI().toString(), auth) : null;
+			HttpCache.Entry entry = Judge.isNull(key) ? null : cache.get(key);
+			if (!Judge.isNull(entry) && entry.fresh()) {
+				return new CachedResponse(this, request, entry, null);
+			} else if (!Judge.isNull(entry)) {
+				entry.conditions().forEach(request::setHeader);
+			}
+
 			httpclient = Judge.isNull(httpclient) ? httpClientBuilder.build() : httpclient;
 
 			Response response = executeProgram(request);
@@ -367,12 +383,44 @@ public class HttpClientUtil {
 				response = executeProgram(request);
 				statusCode = response.statusCode();
 			}
+			if (!Judge.isNull(key)) {
+				response = updateCache(key, entry, request, response);
+				statusCode = response.statusCode();
+			}
 			if (errorExit && !URIUtils.statusIsNormal(statusCode)) {
 				throw new RuntimeException("连接URL失败，状态码: " + statusCode + " URL: " + url);
 			}
 			return response;
 		}
 
+		/**
+		 * 根据响应更新缓存,服务器返回304时使用缓存的响应体,可缓存的200响应读取响应体后存入缓存
+		 *
+		 * @param key     缓存键
+		 * @param entry   发送条件请求时使用的缓存,没有时为null
+		 * @param request 请求
+		 * @param res     响应
+		 * @return 响应
+		 */
+		@NotNull @Contract(pure = true) protected Response updateCache(@NotNull String key, HttpCache.Entry entry, @NotNull HttpUriRequest request, @NotNull Response res) {
+			int statusCode = res.statusCode();
+			if (statusCode == HttpStatus.SC_NOT_MODIFIED && !Judge.isNull(entry)) {
+				return new CachedResponse(this, request, cache.refresh(entry, res.headers()), null);
+			} else if (statusCode != HttpStatus.SC_OK || !HttpCache.cacheable(res.headers())) {
+				return res;
+			}
+			String encoding = res.header("content-encoding"); // HttpClient已解压gzip和deflate,缓存保存解压后的响应体
+			byte[] body = "br".equals(encoding) ? HttpCache.decode(res.bodyAsBytes(), encoding) : res.bodyAsBytes();
+			if (Judge.isNull(body)) {
+				return res;
+			}
+			CachedResponse cached = new CachedResponse(this, request, cache.put(key, res.url(), res.headers(), body), body);
+			cached.headers.putAll(res.headers());
+			HttpCache.decoded(cached.headers);
+			cached.cookies.putAll(res.cookies());
+			return cached;
+		}
+
 		@NotNull @Contract(pure = true) protected Response executeProgram(@NotNull HttpUriRequest request) {
 			CloseableHttpResponse httpResponse;
 			try {
@@ -566,4 +614,54 @@ public class HttpClientUtil {
 
 	}
 
-}
\ No newline at end of file
+	/**
+	 * 缓存的响应,响应体来自缓存文件或已读取的字节数组
+	 *
+	 * @author haicdust
+	 * @version 1.0
+	 * @since 2022/10/3 10:12
+	 */
+	protected static class CachedResponse extends HttpResponse {
+		protected HttpCache.Entry entry;
+		protected byte[] body; // 已读取的响应体,为null时从缓存文件读取
+		protected Map<String, String> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+		protected Map<String, String> cookies = new HashMap<>();
+
+		protected CachedResponse(HttpConnection conn, HttpUriRequest request, HttpCache.Entry entry, byte[] body) {
+			super(conn, request, null);
+			this.entry = entry;
+			this.body = body;
+			this.headers.putAll(entry.headers());
+		}
+
+		@Contract(pure = true) public String url() {
+			return entry.url();
+		}
+
+		@Contract(pure = true) public int statusCode() {
+			return HttpStatus.SC_OK;
+		}
+
+		@Contract(pure = true) public String statusMessage() {
+			return "OK";
+		}
+
+		@Contract(pure = true) public Map<String, String> headers() {
+			return headers;
+		}
+
+		@Contract(pure = true) public Map<String, String> cookies() {
+			return cookies;
+		}
+
+		@Contract(pure = true) public String contentType() {
+			return header("content-type");
+		}
+
+		@Contract(pure = true) public InputStream bodyStream() throws IOException {
+			return Judge.isNull(body) ? entry.bodyStream() : new ByteArrayInputStream(body);
+		}
+
+	}
+
+}
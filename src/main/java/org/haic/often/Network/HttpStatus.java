@@ -67,6 +67,24 @@ public class HttpStatus implements org.apache.http.HttpStatus {
 	 * (因法律原因不可用）是一种HTTP协议的错误状态代码，表示服务器由于法律原因，无法提供客户端请求的资源，例如可能会导致法律诉讼的页面。
 	 */
 	public static final int SC_UNAVAILABLE_FOR_LEGAL_REASONS = 451;
+	/**
+	 * @code 493
+	 * <p>
+	 * 私有协议状态码，下载数据写入本地文件失败，如磁盘空间不足或文件被占用，重试请求无法恢复
+	 */
+	public static final int SC_STORAGE_ERROR = 493;
+	/**
+	 * @code 494
+	 * <p>
+	 * 私有协议状态码，按顺序交付下载数据时消费者抛出异常或输出流写入失败，下载立即结束且不重试
+	 */
+	public static final int SC_CONSUMER_ERROR = 494;
+	/**
+	 * @code 499
+	 * <p>
+	 * 私有协议状态码，客户端在请求完成前主动关闭了请求，如下载被暂停或取消
+	 */
+	public static final int SC_CLIENT_CLOSED_REQUEST = 499;
 
 	/**
 	 * @code 510
@@ -4,7 +4,6 @@ import org.brotli.dec.BrotliInputStream;
 import org.haic.often.Judge;
 import org.haic.often.Multithread.MultiThreadUtil;
 import org.haic.often.StreamUtils;
-import org.haic.often.StringUtils;
 import org.haic.often.Tuple.ThreeTuple;
 import org.haic.often.Tuple.Tuple;
 import org.jetbrains.annotations.Contract;
@@ -16,22 +15,33 @@ import org.jsoup.parser.Parser;
 import javax.net.ssl.HttpsURLConnection;
 import javax.net.ssl.SSLContext;
 import javax.net.ssl.SSLSocketFactory;
+import java.io.ByteArrayInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.HttpURLConnection;
 import java.net.InetSocketAddress;
 import java.net.Proxy;
+import java.net.ProxySelector;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.*;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.Inflater;
 import java.util.zip.InflaterInputStream;
 
 /**
  * Https 工具类
+ * <p>
+ * 使用长连接,同一域名(协议,主机,端口和代理相同)的请求复用JDK连接池中的空闲连接,连接池的每个域名空闲连接数和空闲超时由系统属性 http.maxConnections 和服务器的 Keep-Alive 响应头决定,复用的连接已被服务器关闭时JDK自动重新发送请求
+ * <p>
+ * 响应体读取完毕或关闭响应流后连接才会归还连接池,关闭时剩余数据较少则在后台读取完毕后归还,否则关闭连接,未读取响应体的响应应调用 bodyStream().close()
  *
  * @author haicdust
  * @version 1.0
@@ -63,8 +73,26 @@ public class HttpsUtil {
 		return new HttpConnection("");
 	}
 
+	/**
+	 * 并发执行多个URL的GET请求,全局和每个域名的并发数受限制,按完成顺序返回结果
+	 * <p>
+	 * 需要重试或指定域名并发数时,使用 {@link BatchExecutor}
+	 *
+	 * @param urls           URL列表
+	 * @param maxConnections 全局最大并发数
+	 * @param hostLimit      每个域名最大并发数
+	 * @return 按完成顺序排列的结果流, 读取时等待请求完成
+	 */
+	@Contract(pure = true) public static Stream<BatchExecutor.Result> executeAll(@NotNull Collection<String> urls, int maxConnections, int hostLimit) {
+		return new BatchExecutor(maxConnections).hostLimit(hostLimit).execute(urls, HttpsUtil::connect);
+	}
+
 	protected static class HttpConnection extends Connection {
 
+		protected static final int MAX_REDIRECTS = 20; // 异步请求最大重定向次数,与HttpURLConnection默认值一致
+		protected static final Set<String> RESTRICTED_HEADERS = Set.of("connection", "content-length", "expect", "host", "upgrade"); // HttpClient不允许设置的请求头
+		protected static final Map<List<Object>, HttpClient> CLIENTS = new ConcurrentHashMap<>(); // 按代理和SSL上下文共享的异步客户端
+
 		protected String url; // URL
 		protected String auth; // 身份识别标识
 		protected String params = ""; // 请求参数
@@ -82,9 +110,10 @@ public class HttpsUtil {
 		protected List<Integer> retryStatusCodes = new ArrayList<>();
 		protected ThreeTuple<String, InputStream, String> file;
 		protected SSLSocketFactory sslSocketFactory = IgnoreSSLSocket.MyX509TrustManager().getSocketFactory();
+		protected SSLContext sslContext; // 自定义SSL上下文,为null时忽略证书验证
+		protected HttpCache cache; // 响应缓存
 
 		protected HttpConnection(@NotNull String url) {
-			System.setProperty("http.keepAlive", "false"); // 关闭长连接复用,防止流阻塞
 			initialization(url);
 		}
 
@@ -114,6 +143,7 @@ public class HttpsUtil {
 
 		@Contract(pure = true) public Connection sslSocketFactory(SSLContext sslSocket) {
 			sslSocketFactory = sslSocket.getSocketFactory();
+			sslContext = sslSocket;
 			return this;
 		}
 
@@ -266,6 +296,11 @@ public class HttpsUtil {
 			return this;
 		}
 
+		@Contract(pure = true) public Connection cache(HttpCache cache) {
+			this.cache = cache;
+			return this;
+		}
+
 		@Contract(pure = true) public Document get() {
 			return method(Method.GET).execute().parse();
 		}
@@ -275,11 +310,22 @@ public class HttpsUtil {
 		}
 
 		@NotNull @Contract(pure = true) public Response execute() {
-			Response response = executeProgram(url);
+			String key = cacheKey();
+			HttpCache.Entry entry = Judge.isNull(key) ? null : cache.get(key);
+			if (!Judge.isNull(entry) && entry.fresh()) {
+				return new CachedResponse(this, entry, null);
+			}
+			Map<String, String> conditions = Judge.isNull(entry) ? Map.of() : entry.conditions();
+			HttpResponse response = executeProgram(url, conditions);
 			int statusCode = response.statusCode();
 			for (int i = 0; (URIUtils.statusIsTimeout(statusCode) || retryStatusCodes.contains(statusCode)) && (i < retry || unlimit); i++) {
+				response.discard(); // 释放连接
 				MultiThreadUtil.waitForThread(MILLISECONDS_SLEEP); // 程序等待
-				response = executeProgram(url);
+				response = executeProgram(url, conditions);
+				statusCode = response.statusCode();
+			}
+			if (!Judge.isNull(key)) {
+				response = updateCache(key, entry, response);
 				statusCode = response.statusCode();
 			}
 			if (errorExit && !URIUtils.statusIsNormal(statusCode)) {
@@ -288,18 +334,209 @@ public class HttpsUtil {
 			return response;
 		}
 
+		/**
+		 * 异步运行程序,使用共享的 {@link HttpClient} 发送请求,支持HTTP/2,重试等待和重定向均在请求完成后的回调中进行,等待期间不占用线程
+		 * <p>
+		 * 请求在调用时生成,之后修改此连接不影响已发送的请求; 响应体在完成前全部读取至内存; 与 {@link #execute()} 不同,不会忽略证书的主机名验证,使用SOCKS代理(HttpClient不支持)时在线程池中运行 {@link #execute()}
+		 *
+		 * @return 响应结果的 CompletableFuture
+		 */
+		@Contract(pure = true) public CompletableFuture<Response> executeAsync() {
+			HttpClient client = asyncClient();
+			if (Judge.isNull(client)) {
+				return super.executeAsync();
+			}
+			String key = cacheKey();
+			HttpCache.Entry entry = Judge.isNull(key) ? null : cache.get(key);
+			if (!Judge.isNull(entry) && entry.fresh()) {
+				return CompletableFuture.completedFuture(new CachedResponse(this, entry, null));
+			}
+			HttpRequest request;
+			try {
+				request = request(Judge.isNull(entry) ? Map.of() : entry.conditions());
+			} catch (RuntimeException e) { // URL或请求头格式错误
+				return CompletableFuture.completedFuture(new HttpResponse(this, null));
+			}
+			String url = this.url;
+			boolean errorExit = this.errorExit;
+			return executeAsync(client, request, 0).thenApply(res -> {
+				HttpResponse response = Judge.isNull(key) ? res : updateCache(key, entry, res);
+				if (errorExit && !URIUtils.statusIsNormal(response.statusCode())) {
+					throw new RuntimeException("连接URL失败，状态码: " + response.statusCode() + " URL: " + url);
+				}
+				return response;
+			});
+		}
+
+		/**
+		 * 发送异步请求,请求超时或返回指定状态码时,等待后重新发送
+		 *
+		 * @param client  HttpClient
+		 * @param request 请求
+		 * @param count   已重试次数
+		 * @return 响应结果的 CompletableFuture
+		 */
+		@Contract(pure = true) protected CompletableFuture<HttpResponse> executeAsync(@NotNull HttpClient client, @NotNull HttpRequest request, int count) {
+			int retry = this.retry, millis = MILLISECONDS_SLEEP;
+			boolean unlimit = this.unlimit;
+			List<Integer> retryStatusCodes = this.retryStatusCodes;
+			return sendAsync(client, request, 0).thenCompose(res -> {
+				int statusCode = res.statusCode();
+				if ((URIUtils.statusIsTimeout(statusCode) || retryStatusCodes.contains(statusCode)) && (count < retry || unlimit)) {
+					Executor delayed = CompletableFuture.delayedExecutor(millis, TimeUnit.MILLISECONDS, ASYNC_EXECUTOR); // 等待期间不占用线程
+					return CompletableFuture.supplyAsync(() -> count + 1, delayed).thenCompose(l -> executeAsync(client, request, l));
+				}
+				return CompletableFuture.completedFuture(res);
+			});
+		}
+
+		/**
+		 * 发送异步请求,并在回调中维护cookies和处理重定向
+		 *
+		 * @param client    HttpClient
+		 * @param request   请求
+		 * @param redirects 已重定向次数
+		 * @return 响应结果的 CompletableFuture, 请求失败时状态码为请求超时
+		 */
+		@Contract(pure = true) protected CompletableFuture<HttpResponse> sendAsync(@NotNull HttpClient client, @NotNull HttpRequest request, int redirects) {
+			boolean followRedirects = this.followRedirects;
+			return client.sendAsync(request, java.net.http.HttpResponse.BodyHandlers.ofByteArray()).handle((res, e) -> res).thenCompose(res -> {
+				if (Judge.isNull(res)) {
+					return CompletableFuture.completedFuture(new HttpResponse(this, null));
+				}
+				HttpResponse response = new AsyncResponse(this, res);
+				synchronized (this) {
+					cookies(response.cookies()); // 维护cookies
+				}
+				String redirectUrl; // 重定向
+				if (followRedirects && redirects < MAX_REDIRECTS && URIUtils.statusIsNormal(res.statusCode()) && !Judge.isEmpty(redirectUrl = response.header("location"))) {
+					HttpRequest.Builder builder;
+					try {
+						builder = HttpRequest.newBuilder(request, (name, value) -> !name.equalsIgnoreCase("cookie")).uri(request.uri().resolve(redirectUrl));
+					} catch (IllegalArgumentException ex) { // 重定向地址格式错误
+						return CompletableFuture.completedFuture(response);
+					}
+					if (request.method().equals("POST") && res.statusCode() != HttpStatus.SC_TEMPORARY_REDIRECT && res.statusCode() != 308) { // 与HttpURLConnection一致,改为GET请求
+						builder.GET();
+					}
+					String cookie = cookie();
+					if (!Judge.isEmpty(cookie)) {
+						builder.header("cookie", cookie);
+					}
+					return sendAsync(client, builder.build(), redirects + 1);
+				}
+				return CompletableFuture.completedFuture(response);
+			});
+		}
+
+		/**
+		 * 根据当前连接设置生成异步请求
+		 *
+		 * @param conditions 条件请求的请求头,仅用于GET请求
+		 * @return 请求
+		 */
+		@Contract(pure = true) protected HttpRequest request(@NotNull Map<String, String> conditions) {
+			HttpRequest.Builder builder = HttpRequest.newBuilder(URIUtils.getURI(method == Method.GET && !Judge.isEmpty(params) ? url + (url.contains("?") ? "&" : "?") + params : url));
+			if (timeout > 0) {
+				builder.timeout(Duration.ofMillis(timeout));
+			}
+			switch (method) {
+			case GET -> {
+				builder.GET();
+				conditions.forEach(builder::header);
+			}
+			case POST, PUT, PATCH -> {
+				HttpRequest.BodyPublisher body = HttpRequest.BodyPublishers.ofString(params);
+				if (!Judge.isNull(file)) { // 发送文件
+					InputStream in = file.second;
+					body = HttpRequest.BodyPublishers.concat(body, HttpRequest.BodyPublishers.ofString(file.first), HttpRequest.BodyPublishers.ofInputStream(() -> in),
+							HttpRequest.BodyPublishers.ofString(file.third));
+				}
+				builder.method(method.name(), body);
+			}
+			default -> builder.method(method.name(), HttpRequest.BodyPublishers.noBody());
+			}
+			headers.entrySet().stream().filter(l -> !RESTRICTED_HEADERS.contains(l.getKey().toLowerCase())).forEach(l -> builder.setHeader(l.getKey(), l.getValue()));
+			String cookie = cookie();
+			if (!Judge.isEmpty(cookie)) {
+				builder.setHeader("cookie", cookie);
+			}
+			return builder.build();
+		}
+
+		/**
+		 * 获取cookie请求头
+		 *
+		 * @return cookie请求头
+		 */
+		@Contract(pure = true) protected synchronized String cookie() {
+			return cookies.entrySet().stream().map(l -> l.getKey() + "=" + l.getValue()).collect(Collectors.joining("; "));
+		}
+
+		/**
+		 * 获取当前代理和SSL上下文对应的共享异步客户端,服务器不支持HTTP/2时自动使用HTTP/1.1长连接,重定向由 {@link #sendAsync(HttpClient, HttpRequest, int)} 处理
+		 *
+		 * @return HttpClient对象, 使用SOCKS代理(HttpClient不支持)时为null
+		 */
+		@Contract(pure = true) protected HttpClient asyncClient() {
+			if (proxy.type() == Proxy.Type.SOCKS) {
+				return null;
+			}
+			return CLIENTS.computeIfAbsent(Arrays.asList(proxy, sslContext), key -> HttpClient.newBuilder().version(HttpClient.Version.HTTP_2).followRedirects(HttpClient.Redirect.NEVER)
+					.proxy(proxy.type() == Proxy.Type.HTTP ? ProxySelector.of((InetSocketAddress) proxy.address()) : HttpClient.Builder.NO_PROXY)
+					.sslContext(Judge.isNull(sslContext) ? IgnoreSSLSocket.MyX509TrustManager() : sslContext).executor(ASYNC_EXECUTOR).build());
+		}
+
+		/**
+		 * 获取缓存键
+		 *
+		 * @return 缓存键, 未启用缓存或不是GET请求时为null
+		 */
+		@Contract(pure = true) protected String cacheKey() {
+			return method == Method.GET && !Judge.isNull(cache) ? HttpCache.key(Judge.isEmpty(params) ? url : url + (url.contains("?") ? "&" : "?") + params, auth) : null;
+		}
+
+		/**
+		 * 根据响应更新缓存,服务器返回304时使用缓存的响应体,可缓存的200响应读取响应体后存入缓存
+		 *
+		 * @param key   缓存键
+		 * @param entry 发送条件请求时使用的缓存,没有时为null
+		 * @param res   响应
+		 * @return 响应
+		 */
+		@NotNull @Contract(pure = true) protected HttpResponse updateCache(@NotNull String key, HttpCache.Entry entry, @NotNull HttpResponse res) {
+			int statusCode = res.statusCode();
+			if (statusCode == HttpStatus.SC_NOT_MODIFIED && !Judge.isNull(entry)) {
+				res.discard();
+				return new CachedResponse(this, cache.refresh(entry, res.headers()), null);
+			} else if (statusCode != HttpStatus.SC_OK || !HttpCache.cacheable(res.headers())) {
+				return res;
+			}
+			byte[] body = HttpCache.decode(res.bodyAsBytes(), res.header("content-encoding")); // 缓存保存解压后的响应体
+			if (Judge.isNull(body)) {
+				return res;
+			}
+			HttpResponse cached = new CachedResponse(this, cache.put(key, res.url(), res.headers(), body), body);
+			cached.headers = HttpCache.decoded(res.headers());
+			cached.cookies = res.cookies();
+			return cached;
+		}
+
 		/**
 		 * 主程序
 		 *
+		 * @param url        请求URL
+		 * @param conditions 条件请求的请求头,仅用于GET请求
 		 * @return this
 		 */
-		@NotNull @Contract(pure = true) protected Response executeProgram(@NotNull String url) {
-			Response res = new HttpResponse(this, null);
+		@NotNull @Contract(pure = true) protected HttpResponse executeProgram(@NotNull String url, @NotNull Map<String, String> conditions) {
+			HttpResponse res = new HttpResponse(this, null);
 			try {
 				HttpURLConnection conn;
 				switch (method) {
 				case GET -> {
 					conn = connection(Judge.isEmpty(params) ? url : url + (url.contains("?") ? "&" : "?") + params);
+					conditions.forEach(conn::setRequestProperty);
 					conn.connect();
 				}
 				case OPTIONS, DELETE, HEAD, TRACE -> {
@@ -329,13 +566,14 @@ public class HttpsUtil {
 				}
 				default -> throw new RuntimeException("Unknown mode");
 				}
-				conn.disconnect();
+				conn.getResponseCode(); // 读取响应头,连接在响应体读取完毕后归还连接池
 				res = new HttpResponse(this, conn);
 				cookies(res.cookies()); // 维护cookies
 
 				String redirectUrl; // 修复重定向
 				if (followRedirects && URIUtils.statusIsNormal(res.statusCode()) && !Judge.isEmpty(redirectUrl = res.header("location"))) {
-					res = executeProgram(redirectUrl);
+					res.discard();
+					res = executeProgram(redirectUrl, conditions);
 				}
 			} catch (IOException e) {
 				// e.printStackTrace();
@@ -352,7 +590,6 @@ public class HttpsUtil {
 		 */
 		protected HttpURLConnection connection(@NotNull String url) throws IOException {
 			HttpURLConnection conn = (HttpURLConnection) URIUtils.getURL(url).openConnection(proxy);
-			conn.setRequestProperty("connection", "close");
 			conn.setRequestMethod(method.name()); // 请求方法
 			conn.setReadTimeout(timeout); // 设置超时
 			conn.setInstanceFollowRedirects(followRedirects); // 重定向,http和https之间无法遵守重定向
@@ -369,7 +606,7 @@ public class HttpsUtil {
 			}
 
 			// 设置cookies
-			conn.setRequestProperty("cookie", cookies.entrySet().stream().map(l -> l.getKey() + "=" + l.getValue()).collect(Collectors.joining("; ")));
+			conn.setRequestProperty("cookie", cookie());
 
 			return conn;
 		}
@@ -387,6 +624,8 @@ public class HttpsUtil {
 		protected HttpConnection connection;
 		protected HttpURLConnection conn; // HttpURLConnection
 		protected Charset charset = StandardCharsets.UTF_8;
+		protected Map<String, String> headers; // 响应头索引,忽略大小写,首次访问时解析
+		protected Map<String, String> cookies; // 响应cookies,与响应头一同解析
 
 		protected HttpResponse(HttpConnection connection, HttpURLConnection conn) {
 			this.connection = connection;
@@ -418,10 +657,10 @@ public class HttpsUtil {
 		}
 
 		@Contract(pure = true) public Map<String, String> headers() {
-			return conn.getHeaderFields().entrySet().stream().filter(l -> !Judge.isNull(l.getKey())).collect(Collectors.toMap(l -> l.getKey().toLowerCase(),
-					l -> l.getKey().equals("Set-Cookie") ?
-							l.getValue().stream().filter(v -> !v.equals("-")).map(v -> v.substring(0, v.indexOf(";"))).collect(Collectors.joining("; ")) :
-							StringUtils.join(l.getValue(), "; "), (e1, e2) -> e2));
+			if (Judge.isNull(headers)) {
+				parseHeaders();
+			}
+			return headers;
 		}
 
 		@Contract(pure = true) public Response header(@NotNull String key, @NotNull String value) {
@@ -439,11 +678,55 @@ public class HttpsUtil {
 		}
 
 		@Contract(pure = true) public Map<String, String> cookies() {
-			List<String> cookies = conn.getHeaderFields().get("Set-Cookie");
-			return Judge.isNull(cookies) ?
-					new HashMap<>() :
-					cookies.stream().filter(l -> !l.equals("-")).collect(
-							Collectors.toMap(l -> l.substring(0, l.indexOf("=")), l -> l.substring(l.indexOf("=") + 1, l.indexOf(";")), (e1, e2) -> e2));
+			if (Judge.isNull(cookies)) {
+				parseHeaders();
+			}
+			return cookies;
+		}
+
+		/**
+		 * 解析响应头和cookies,每个响应只解析一次
+		 * <p>
+		 * 响应头名称转为小写并忽略大小写查询,同名的多个值以"; "连接,Set-Cookie 只保留名称和值
+		 */
+		@Contract(pure = true) protected synchronized void parseHeaders() {
+			if (!Judge.isNull(headers)) {
+				return;
+			}
+			Map<String, String> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+			Map<String, String> cookies = new HashMap<>();
+			for (Map.Entry<String, List<String>> entry : headerFields().entrySet()) {
+				String name = entry.getKey();
+				List<String> values = entry.getValue();
+				if (Judge.isNull(name) || name.startsWith(":")) { // 状态行或HTTP/2伪首部
+					continue;
+				} else if (name.equalsIgnoreCase("set-cookie")) {
+					StringJoiner joiner = new StringJoiner("; ");
+					for (String value : values) {
+						int end = value.indexOf(";");
+						String pair = end < 0 ? value : value.substring(0, end);
+						int index = pair.indexOf("=");
+						if (index > 0) {
+							cookies.put(pair.substring(0, index), pair.substring(index + 1));
+							joiner.add(pair);
+						}
+					}
+					headers.put(name.toLowerCase(), joiner.toString());
+				} else {
+					headers.put(name.toLowerCase(), values.size() == 1 ? values.get(0) : String.join("; ", values));
+				}
+			}
+			this.cookies = cookies;
+			this.headers = headers;
+		}
+
+		/**
+		 * 获取原始响应头
+		 *
+		 * @return 响应头名称和值的列表
+		 */
+		@Contract(pure = true) protected Map<String, List<String>> headerFields() {
+			return Judge.isNull(conn) ? Map.of() : conn.getHeaderFields();
 		}
 
 		@Contract(pure = true) public Response cookie(@NotNull String name, @NotNull String value) {
@@ -510,6 +793,111 @@ public class HttpsUtil {
 			return this;
 		}
 
+		/**
+		 * 丢弃未读取的响应体,剩余数据较少时连接在后台读取完毕后归还连接池,否则关闭连接
+		 */
+		@Contract(pure = true) protected void discard() {
+			if (Judge.isNull(conn)) {
+				return;
+			}
+			try {
+				InputStream in = bodyStream();
+				if (!Judge.isNull(in)) { // 关闭响应流即可
+					in.close();
+				}
+			} catch (IOException e) {
+				conn.disconnect();
+			}
+		}
+
+	}
+
+	/**
+	 * 异步请求的响应,响应体已读取至内存
+	 *
+	 * @author haicdust
+	 * @version 1.0
+	 * @since 2022/10/3 15:40
+	 */
+	protected static class AsyncResponse extends HttpResponse {
+		protected java.net.http.HttpResponse<byte[]> res;
+
+		protected AsyncResponse(HttpConnection connection, java.net.http.HttpResponse<byte[]> res) {
+			super(connection, null);
+			this.res = res;
+		}
+
+		@Contract(pure = true) public String url() {
+			return res.uri().toString();
+		}
+
+		@Contract(pure = true) public int statusCode() {
+			return res.statusCode();
+		}
+
+		@Contract(pure = true) public String statusMessage() {
+			return null; // HttpClient不提供状态消息,HTTP/2也没有状态消息
+		}
+
+		@Contract(pure = true) public String contentType() {
+			return header("content-type");
+		}
+
+		@Contract(pure = true) public InputStream bodyStream() {
+			return new ByteArrayInputStream(res.body());
+		}
+
+		@Contract(pure = true) protected Map<String, List<String>> headerFields() {
+			return res.headers().map();
+		}
+
+	}
+
+	/**
+	 * 缓存的响应,响应体来自缓存文件或已读取的字节数组
+	 *
+	 * @author haicdust
+	 * @version 1.0
+	 * @since 2022/10/3 10:12
+	 */
+	protected static class CachedResponse extends HttpResponse {
+		protected HttpCache.Entry entry;
+		protected byte[] body; // 已读取的响应体,为null时从缓存文件读取
+
+		protected CachedResponse(HttpConnection connection, HttpCache.Entry entry, byte[] body) {
+			super(connection, null);
+			this.entry = entry;
+			this.body = body;
+		}
+
+		@Contract(pure = true) public String url() {
+			return entry.url();
+		}
+
+		@Contract(pure = true) public int statusCode() {
+			return HttpStatus.SC_OK;
+		}
+
+		@Contract(pure = true) public String statusMessage() {
+			return "OK";
+		}
+
+		@Contract(pure = true) public String contentType() {
+			return header("content-type");
+		}
+
+		@Contract(pure = true) public InputStream bodyStream() throws IOException {
+			return Judge.isNull(body) ? entry.bodyStream() : new ByteArrayInputStream(body);
+		}
+
+		@Contract(pure = true) protected synchronized void parseHeaders() {
+			if (Judge.isNull(headers)) {
+				headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+				headers.putAll(entry.headers());
+				cookies = new HashMap<>();
+			}
+		}
+
 	}
 
-}
\ No newline at end of file
+}
@@ -11,18 +11,18 @@ import org.jsoup.nodes.Document;
 import org.jsoup.parser.Parser;
 
 import javax.net.ssl.SSLContext;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.net.HttpCookie;
 import java.net.InetSocketAddress;
 import java.net.Proxy;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * Jsoup 工具类
@@ -58,6 +58,20 @@ public class JsoupUtil {
 		return new HttpConnection(Jsoup.newSession());
 	}
 
+	/**
+	 * 并发执行多个URL的GET请求,全局和每个域名的并发数受限制,按完成顺序返回结果
+	 * <p>
+	 * 需要重试或指定域名并发数时,使用 {@link BatchExecutor}
+	 *
+	 * @param urls           URL列表
+	 * @param maxConnections 全局最大并发数
+	 * @param hostLimit      每个域名最大并发数
+	 * @return 按完成顺序排列的结果流, 读取时等待请求完成
+	 */
+	@Contract(pure = true) public static Stream<BatchExecutor.Result> executeAll(@NotNull Collection<String> urls, int maxConnections, int hostLimit) {
+		return new BatchExecutor(maxConnections).hostLimit(hostLimit).execute(urls, JsoupUtil::connect);
+	}
+
 	protected static class HttpConnection extends Connection {
 		protected String auth; // 身份识别标识
 		protected int retry; // 请求异常重试次数
@@ -67,6 +81,7 @@ public class JsoupUtil {
 
 		protected List<Integer> retryStatusCodes = new ArrayList<>(); // 重试的错误状态码
 		protected Parser parser = Parser.htmlParser();
+		protected HttpCache cache; // 响应缓存
 
 		protected org.jsoup.Connection conn;
 
@@ -268,6 +283,11 @@ public class JsoupUtil {
 			return this;
 		}
 
+		@Contract(pure = true) public Connection cache(HttpCache cache) {
+			this.cache = cache;
+			return this;
+		}
+
 		@Contract(pure = true) public Document get() {
 			return method(Method.GET).execute().parse();
 		}
@@ -277,12 +297,35 @@ public class JsoupUtil {
 		}
 
 		@NotNull @Contract(pure = true) public Response execute() {
-			Response res = executeProgram(conn);
-			int statusCode = res.statusCode();
-			for (int i = 0; (URIUtils.statusIsTimeout(statusCode) || retryStatusCodes.contains(statusCode)) && (i < retry || unlimit); i++) {
-				MultiThreadUtil.waitForThread(MILLISECONDS_SLEEP); // 程序等待
+			org.jsoup.Connection.Request request = conn.request();
+			String key = null;
+			if (request.method() == org.jsoup.Connection.Method.GET && !Judge.isNull(cache)) {
+				String url = request.url().toExternalForm();
+				String params = request.data().stream().map(l -> l.key() + "=" + l.value()).collect(Collectors.joining("&"));
+				key = HttpCache.key(Judge.isEmpty(params) ? url : url + (url.contains("?") ? "&" : "?") + params, request.header("authorization"));
+			}
+			HttpCache.Entry entry = Judge.isNull(key) ? null : cache.get(key);
+			if (!Judge.isNull(entry) && entry.fresh()) {
+				return new CachedResponse(this, entry, null);
+			}
+			Map<String, String> conditions = Judge.isNull(entry) ? Map.of() : entry.conditions();
+			conditions.forEach(request::header);
+			Response res;
+			int statusCode;
+			try {
 				res = executeProgram(conn);
 				statusCode = res.statusCode();
+				for (int i = 0; (URIUtils.statusIsTimeout(statusCode) || retryStatusCodes.contains(statusCode)) && (i < retry || unlimit); i++) {
+					MultiThreadUtil.waitForThread(MILLISECONDS_SLEEP); // 程序等待
+					res = executeProgram(conn);
+					statusCode = res.statusCode();
+				}
+			} finally {
+				conditions.keySet().forEach(request::removeHeader);
+			}
+			if (!Judge.isNull(key)) {
+				res = updateCache(key, entry, res);
+				statusCode = res.statusCode();
 			}
 			if (errorExit && !URIUtils.statusIsNormal(statusCode)) {
 				throw new RuntimeException("连接URL失败，状态码: " + statusCode + " URL: " + conn.request().url());
@@ -290,6 +333,34 @@ public class JsoupUtil {
 			return res;
 		}
 
+		/**
+		 * 根据响应更新缓存,服务器返回304时使用缓存的响应体,可缓存的200响应读取响应体后存入缓存
+		 *
+		 * @param key   缓存键
+		 * @param entry 发送条件请求时使用的缓存,没有时为null
+		 * @param res   响应
+		 * @return 响应
+		 */
+		@NotNull @Contract(pure = true) protected Response updateCache(@NotNull String key, HttpCache.Entry entry, @NotNull Response res) {
+			int statusCode = res.statusCode();
+			if (statusCode == HttpStatus.SC_NOT_MODIFIED && !Judge.isNull(entry)) {
+				res.bodyAsBytes(); // 读取空响应体,释放连接
+				return new CachedResponse(this, cache.refresh(entry, res.headers()), null);
+			} else if (statusCode != HttpStatus.SC_OK || !HttpCache.cacheable(res.headers())) {
+				return res;
+			}
+			String encoding = res.header("content-encoding"); // jsoup已解压gzip和deflate,缓存保存解压后的响应体
+			byte[] body = "br".equals(encoding) ? HttpCache.decode(res.bodyAsBytes(), encoding) : res.bodyAsBytes();
+			if (Judge.isNull(body)) {
+				return res;
+			}
+			CachedResponse cached = new CachedResponse(this, cache.put(key, res.url(), res.headers(), body), body);
+			cached.headers.putAll(res.headers());
+			HttpCache.decoded(cached.headers);
+			cached.cookies.putAll(res.cookies());
+			return cached;
+		}
+
 		@NotNull @Contract(pure = true) protected Response executeProgram(@NotNull org.jsoup.Connection conn) {
 			org.jsoup.Connection.Response res;
 			try {
@@ -389,7 +460,7 @@ public class JsoupUtil {
 			String encoding = header("content-encoding");
 			try (InputStream in = bodyStream(); InputStream body = "br".equals(encoding) ? new BrotliInputStream(in) : in) {
 				result = StreamUtils.stream(body).charset(charset).read();
-			} catch (IOException e) {
+			} catch (IOException | UncheckedIOException e) {
 				return null;
 			}
 			return result;
@@ -410,4 +481,98 @@ public class JsoupUtil {
 
 	}
 
-}
\ No newline at end of file
+	/**
+	 * 缓存的响应,响应体来自缓存文件或已读取的字节数组
+	 *
+	 * @author haicdust
+	 * @version 1.0
+	 * @since 2022/10/3 10:12
+	 */
+	protected static class CachedResponse extends HttpResponse {
+
+		protected HttpCache.Entry entry;
+		protected byte[] body; // 已读取的响应体,为null时从缓存文件读取
+		protected Map<String, String> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+		protected Map<String, String> cookies = new HashMap<>();
+
+		protected CachedResponse(HttpConnection conn, HttpCache.Entry entry, byte[] body) {
+			super(conn, null);
+			this.entry = entry;
+			this.body = body;
+			this.headers.putAll(entry.headers());
+		}
+
+		@Contract(pure = true) public String url() {
+			return entry.url();
+		}
+
+		@Contract(pure = true) public int statusCode() {
+			return HttpStatus.SC_OK;
+		}
+
+		@Contract(pure = true) public String statusMessage() {
+			return "OK";
+		}
+
+		@Contract(pure = true) public String header(@NotNull String name) {
+			return headers.get(name);
+		}
+
+		@Contract(pure = true) public Map<String, String> headers() {
+			return headers;
+		}
+
+		@Contract(pure = true) public Response header(@NotNull String key, @NotNull String value) {
+			headers.put(key, value);
+			return this;
+		}
+
+		@Contract(pure = true) public Response removeHeader(@NotNull String key) {
+			headers.remove(key);
+			return this;
+		}
+
+		@Contract(pure = true) public String cookie(@NotNull String name) {
+			return cookies.get(name);
+		}
+
+		@Contract(pure = true) public Map<String, String> cookies() {
+			return cookies;
+		}
+
+		@Contract(pure = true) public Response cookie(@NotNull String name, @NotNull String value) {
+			cookies.put(name, value);
+			return this;
+		}
+
+		@Contract(pure = true) public Response removeCookie(@NotNull String name) {
+			cookies.remove(name);
+			return this;
+		}
+
+		@Contract(pure = true) public String contentType() {
+			return header("content-type");
+		}
+
+		@Contract(pure = true) public InputStream bodyStream() {
+			try {
+				return Judge.isNull(body) ? entry.bodyStream() : new ByteArrayInputStream(body);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+
+		@Contract(pure = true) public byte[] bodyAsBytes() {
+			if (!Judge.isNull(body)) {
+				return body;
+			}
+			try (InputStream in = entry.bodyStream()) {
+				return in.readAllBytes();
+			} catch (IOException e) {
+				return null;
+			}
+		}
+
+	}
+
+}
@@ -1,6 +1,7 @@
 package org.haic.often.Network;
 
 import com.alibaba.fastjson.JSONObject;
+import org.haic.often.BufferPool;
 import org.haic.often.FilesUtils;
 import org.haic.often.Judge;
 import org.haic.often.Multithread.MultiThreadUtil;
@@ -13,13 +14,28 @@ import org.jetbrains.annotations.NotNull;
 import java.io.*;
 import java.net.InetSocketAddress;
 import java.net.Proxy;
+import java.net.ProxySelector;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.IntSupplier;
+import java.util.stream.Collectors;
+import java.util.zip.CRC32;
 
 /**
  * 网络文件 工具类
@@ -184,7 +200,8 @@ public class NetworkUtil {
 		@Contract(pure = true) public boolean delete() {
 			File storage = request.getStorage();
 			File session = new File(storage.getPath() + ".session");
-			return (!storage.exists() || storage.delete()) && (!session.exists() || session.delete());
+			File journal = new File(storage.getPath() + ".journal");
+			return (!storage.exists() || storage.delete()) && (!session.exists() || session.delete()) && (!journal.exists() || journal.delete());
 		}
 	}
 
@@ -299,11 +316,19 @@ public class NetworkUtil {
 
 	protected static class HttpConnection extends Connection {
 
+		protected static final Map<Proxy, HttpClient> HTTP2_CLIENTS = new ConcurrentHashMap<>(); // 按代理共享的HTTP/2客户端
+		protected static final Set<String> RESTRICTED_HEADERS = Set.of("connection", "content-length", "expect", "host", "upgrade"); // HttpClient不允许设置的请求头
+
+		protected static final ExecutorService ASYNC_EXECUTOR = MultiThreadUtil.newVirtualThreadPerTaskExecutor(); // 默认异步上传和下载线程池
+		protected static final Map<String, CompletableFuture<Response>> FLIGHTS = new ConcurrentHashMap<>(); // 正在进行的下载,键为URL和存放路径,或占用的存放路径
+
 		protected String url; // 请求URL
 		protected String lastHash; // hash值,md5算法,用于判断服务器文件损坏
 		protected String fileName; // 文件名
 		protected String hash; // hash值,md5算法
 		protected String SESSION_SUFFIX = ".session";
+		protected String JOURNAL_SUFFIX = ".journal";
+		protected String UPLOAD_SUFFIX = ".upload";
 
 		protected long fileSize; // 文件大小
 
@@ -311,28 +336,60 @@ public class NetworkUtil {
 		protected int MILLISECONDS_SLEEP; // 重试等待时间
 		protected int retry; // 请求异常重试次数
 		protected int MAX_THREADS = 10; // 默认10线程下载
+		protected int MIN_THREADS; // 自适应模式最小线程数,0为关闭自适应
+		protected int ADAPTIVE_INTERVAL = 1000; // 自适应模式调整间隔(毫秒)
+		protected boolean VIRTUAL_THREAD; // 使用虚拟线程下载分块
+		protected boolean HTTP2; // 使用HTTP/2多路复用下载分块
+		protected int WRITE_THREADS; // 异步写入线程数,0为同步写入
+		protected int WRITE_QUEUE_SIZE = 256; // 异步写入队列容量
+		protected int JOURNAL_INTERVAL = 1000; // 断点续传日志写入间隔(毫秒)
+		protected long UPLOAD_CHUNK_SIZE; // 分块上传的块大小,0为整体上传
+		protected int UPLOAD_THREADS = 1; // 分块上传线程数
 
 		protected long PIECE_MAX_SIZE = 1048576; // 默认块大小，1M
+		protected long PIECE_MIN_SIZE = 65536; // 拆分分块时最小块大小，64K
 		protected boolean valid = true; // MD5效验
 		protected boolean unlimit;// 请求异常无限重试
 		protected boolean errorExit; // 错误退出
 		protected Proxy proxy = Proxy.NO_PROXY; // 代理
+		protected RateLimiter limiter; // 连接限速器
+		protected RateLimiter hostLimiter; // 域名限速器,上级为全局限速器
+		protected List<Semaphore> permits = new ArrayList<>(); // 每个请求需要获取的连接许可,由下载管理器设置
+		protected Semaphore threads; // 下载线程许可,由下载管理器设置,所有任务共用
+		protected Metrics metrics = new Metrics(); // 下载耗时统计
+		protected Consumer<Progress> listener; // 下载进度监听器
+		protected ContentStore store; // 按hash寻址的本地下载缓存
+		protected File seed; // 差异下载的本地旧版本文件
+		protected BlockManifest manifest; // 差异下载的分块校验清单
+		protected int PROGRESS_INTERVAL = 1000; // 下载进度回调间隔(毫秒)
+		protected volatile boolean stopped; // 下载被暂停或取消
 		protected File storage; // 本地存储文件
 		protected File session; // 配置信息文件
+		protected String claimed; // 当前连接占用的存放路径
+		protected CompletableFuture<Response> claim; // 占用存放路径的下载,结束时完成
 		protected List<Integer> retryStatusCodes = new ArrayList<>();
+		protected long PIECE_HASH_SIZE; // 分块hash对应的块大小
+		protected List<String> pieceHashes = new ArrayList<>(); // 分块hash
+		protected List<String> mirrors = new ArrayList<>(); // 镜像URL
+		protected List<Source> sources = new ArrayList<>(); // 分块下载源,包含URL和镜像URL
+		protected int MIRROR_MAX_FAILURES = 3; // 下载源连续失败次数达到该值时弃用
 
 		protected Map<String, String> headers = new HashMap<>(); // headers
 		protected Map<String, String> cookies = new HashMap<>(); // cookies
 
 		protected ExecutorService executorService; // 下载线程池
+		protected PieceWriter writer; // 文件写入通道
+		protected Journal journal; // 断点续传日志
+		protected AdaptiveController adaptive; // 自适应线程控制器
 		protected Method method = Method.MULTITHREAD;// 下载模式
 
 		protected Request request = new Request();
 		protected JSONObject fileInfo = new JSONObject();
 		protected Thread abnormal;
-		protected long MAX_COMPLETED;
+		protected volatile long MAX_COMPLETED;
 		protected AtomicLong schedule = new AtomicLong(0);
 		protected Map<Long, Long> status = new ConcurrentHashMap<>();
+		protected final TreeMap<Long, Piece> pieces = new TreeMap<>(); // 正在下载的分块
 
 		protected HttpConnection() {
 		}
@@ -350,6 +407,15 @@ public class NetworkUtil {
 			return this;
 		}
 
+		@Contract(pure = true) public Connection mirrors(@NotNull String... urls) {
+			return mirrors(Arrays.asList(urls));
+		}
+
+		@Contract(pure = true) public Connection mirrors(@NotNull List<String> urls) {
+			this.mirrors = new ArrayList<>(urls);
+			return this;
+		}
+
 		@Contract(pure = true) protected Connection session(@NotNull File session) {
 			if (!session.getName().endsWith(SESSION_SUFFIX)) {
 				throw new RuntimeException("Not is session file: " + session);
@@ -364,6 +430,13 @@ public class NetworkUtil {
 				fileSize = fileInfo.getLong("fileSize");
 				headers = StringUtils.jsonToMap(fileInfo.getString("header"));
 				cookies = StringUtils.jsonToMap(fileInfo.getString("cookie"));
+				if (fileInfo.containsKey("mirrors")) {
+					mirrors = fileInfo.getJSONArray("mirrors").toJavaList(String.class);
+				}
+				if (fileInfo.containsKey("pieceHash")) {
+					PIECE_HASH_SIZE = fileInfo.getLong("pieceLength");
+					pieceHashes = fileInfo.getJSONArray("pieceHash").toJavaList(String.class);
+				}
 			} else { // 配置文件不存在，抛出异常
 				throw new RuntimeException("Not found or not is file " + session);
 			}
@@ -409,6 +482,39 @@ public class NetworkUtil {
 				throw new RuntimeException("thread Less than 1");
 			}
 			this.MAX_THREADS = nThread;
+			this.MIN_THREADS = 0;
+			return this;
+		}
+
+		@Contract(pure = true) public Connection progress(@NotNull Consumer<Progress> listener) {
+			return progress(listener, PROGRESS_INTERVAL);
+		}
+
+		@Contract(pure = true) public Connection progress(@NotNull Consumer<Progress> listener, int millis) {
+			if (millis < 1) {
+				throw new RuntimeException("millis Less than 1");
+			}
+			this.listener = listener;
+			this.PROGRESS_INTERVAL = millis;
+			return this;
+		}
+
+		@Contract(pure = true) public Connection http2(boolean enable) {
+			this.HTTP2 = enable;
+			return this;
+		}
+
+		@Contract(pure = true) public Connection virtualThread(boolean enable) {
+			this.VIRTUAL_THREAD = enable;
+			return this;
+		}
+
+		@Contract(pure = true) public Connection multithread(int minThread, int maxThread) {
+			if (minThread < 1 || maxThread < minThread) {
+				throw new RuntimeException("thread Less than 1 or max thread Less than min thread");
+			}
+			this.MAX_THREADS = maxThread;
+			this.MIN_THREADS = minThread;
 			return this;
 		}
 
@@ -483,6 +589,25 @@ public class NetworkUtil {
 			return this;
 		}
 
+		@Contract(pure = true) public Connection rateLimit(@NotNull RateLimiter limiter) {
+			this.limiter = limiter;
+			return this;
+		}
+
+		@Contract(pure = true) public Connection delta(@NotNull File seed, @NotNull BlockManifest manifest) {
+			this.seed = seed;
+			this.manifest = manifest;
+			if (pieceHashes.isEmpty()) { // 使用清单中的块hash效验组装后的文件
+				pieceHash(manifest.blockSize(), manifest.hashes());
+			}
+			return this;
+		}
+
+		@Contract(pure = true) public Connection store(@NotNull ContentStore store) {
+			this.store = store;
+			return this;
+		}
+
 		@Contract(pure = true) public Connection hash(@NotNull String hash) {
 			request.setHash(this.hash = hash.toLowerCase());
 			return this;
@@ -493,11 +618,56 @@ public class NetworkUtil {
 			return this;
 		}
 
+		@Contract(pure = true) public Connection pieceHash(long length, @NotNull List<String> hashes) {
+			if (length < 1) {
+				throw new RuntimeException("piece length Less than 1");
+			}
+			for (String hash : hashes) { // 下载时才创建hash计算器,提前检查避免下载中途失败
+				if (Judge.isNull(StreamDigest.algorithm(hash)) || !hash.matches("[0-9a-fA-F]+")) {
+					throw new RuntimeException("Unknown piece hash: " + hash);
+				}
+			}
+			this.PIECE_HASH_SIZE = length;
+			this.pieceHashes = hashes.stream().map(String::toLowerCase).toList();
+			return this;
+		}
+
 		public Connection pieceSize(long kb) {
 			PIECE_MAX_SIZE = kb * 1024;
 			return this;
 		}
 
+		@Contract(pure = true) public Connection journal(int millis) {
+			this.JOURNAL_INTERVAL = millis;
+			return this;
+		}
+
+		@Contract(pure = true) public Connection writeBehind(int nThread) {
+			return writeBehind(nThread, WRITE_QUEUE_SIZE);
+		}
+
+		@Contract(pure = true) public Connection uploadChunk(long kb) {
+			return uploadChunk(kb, 1);
+		}
+
+		@Contract(pure = true) public Connection uploadChunk(long kb, int nThread) {
+			if (kb < 0 || kb > 2097151 || nThread < 1) {
+				throw new RuntimeException("chunk size Less than 0 or greater than 2G or thread Less than 1");
+			}
+			this.UPLOAD_CHUNK_SIZE = kb * 1024;
+			this.UPLOAD_THREADS = nThread;
+			return this;
+		}
+
+		@Contract(pure = true) public Connection writeBehind(int nThread, int queueSize) {
+			if (nThread < 0 || queueSize < 1) {
+				throw new RuntimeException("thread Less than 0 or queue size Less than 1");
+			}
+			this.WRITE_THREADS = nThread;
+			this.WRITE_QUEUE_SIZE = queueSize;
+			return this;
+		}
+
 		/**
 		 * 受于系统限制,对文件名长度进行效验,防止致命错误
 		 *
@@ -514,16 +684,330 @@ public class NetworkUtil {
 		}
 
 		@Contract(pure = true) public Response upload(@NotNull File file) {
-			request.setStorage(file).setFileSize(file.length()).setHash(FilesUtils.getMD5(file));
-			org.haic.often.Network.Response res;
-			try (InputStream in = new BufferedInputStream(new FileInputStream(file), DEFAULT_BUFFER_SIZE)) {
-				res = HttpsUtil.connect(url).proxy(proxy).headers(headers).cookies(cookies).file(Judge.isEmpty(fileName) ? file.getName() : fileName, in)
-						.retry(retry, MILLISECONDS_SLEEP).retry(unlimit).errorExit(errorExit).method(org.haic.often.Network.Method.POST).execute();
-				request.headers(res.headers()).cookies(res.cookies());
+			reset(this); // 同步上传开始时重置停止标志,之前取消的异步任务不影响此次上传
+			return uploadFile(file);
+		}
+
+		/**
+		 * 上传文件,不重置停止标志,由同步上传和 {@link #async(Callable, Executor)} 调用
+		 * <p>
+		 * 请求超时或状态码在重试列表中时重新打开文件再次发送,文件md5在发送时计算,仅上传成功时记录
+		 *
+		 * @param file 待上传的文件
+		 * @return 上传结果
+		 */
+		@Contract(pure = true) protected Response uploadFile(@NotNull File file) {
+			request.setStorage(file).setFileSize(file.length()).setHash(null);
+			if (UPLOAD_CHUNK_SIZE > 0 && file.length() > 0) {
+				return CHUNKED(file);
+			}
+			String name = Judge.isEmpty(fileName) ? file.getName() : fileName;
+			org.haic.often.Network.Response res = null;
+			MessageDigest md5 = null;
+			int statusCode = HttpStatus.SC_REQUEST_TIMEOUT;
+			for (int i = 0; !stopped && (i == 0 || (URIUtils.statusIsTimeout(statusCode) || retryStatusCodes.contains(statusCode)) && (i <= retry || unlimit)); i++) {
+				if (i > 0) {
+					MultiThreadUtil.waitForThread(MILLISECONDS_SLEEP);
+				}
+				md5 = md5(); // 每次重试重新打开文件,md5随上传流计算,无需再次读取文件
+				try (InputStream buffered = new BufferedInputStream(new DigestInputStream(new FileInputStream(file), md5), DEFAULT_BUFFER_SIZE);
+						InputStream in = stoppable(RateLimiter.host(URIUtils.getDomain(url)).wrap(Judge.isNull(limiter) ? buffered : limiter.wrap(buffered)))) { // 上传限速
+					res = HttpsUtil.connect(url).proxy(proxy).headers(headers).cookies(cookies).file(name, in).method(org.haic.often.Network.Method.POST).execute();
+					statusCode = res.statusCode();
+				} catch (IOException e) {
+					return new HttpResponse(this, request.statusCode(stopped ? HttpStatus.SC_CLIENT_CLOSED_REQUEST : HttpStatus.SC_REQUEST_TIMEOUT));
+				}
+			}
+			if (stopped) {
+				return new HttpResponse(this, request.statusCode(HttpStatus.SC_CLIENT_CLOSED_REQUEST));
+			} else if (errorExit && !URIUtils.statusIsNormal(statusCode)) {
+				throw new RuntimeException("文件上传失败，状态码: " + statusCode + " URL: " + url);
+			}
+			request.headers(res.headers()).cookies(res.cookies());
+			String hash = URIUtils.statusIsOK(statusCode) ? HexFormat.of().formatHex(md5.digest()) : null; // 仅上传成功时记录md5
+			return new HttpResponse(this, request.statusCode(statusCode).setHash(hash).setBody(res.body()));
+		}
+
+		/**
+		 * 分块上传,按顺序读取一次文件,读取时同步计算文件md5和分块md5,然后将分块交由上传线程并行上传
+		 * <p>
+		 * 每个分块以multipart/form-data方式POST,并附带 content-range 请求头表示分块在文件中的位置,最后一个分块在其它分块全部上传成功后发送,服务器可据此合并文件
+		 * <p>
+		 * 已上传的分块及其md5记录在上传日志中,重新上传同一文件时,md5未改变的分块将被跳过,全部上传成功后删除上传日志
+		 *
+		 * @param file 待上传的文件
+		 * @return 上传结果
+		 */
+		@Contract(pure = true) protected Response CHUNKED(@NotNull File file) {
+			long size = file.length();
+			long chunkSize = UPLOAD_CHUNK_SIZE;
+			int count = (int) Math.max(1, (size + chunkSize - 1) / chunkSize);
+			String name = Judge.isEmpty(fileName) ? file.getName() : fileName;
+			File log = new File(file + UPLOAD_SUFFIX);
+			JSONObject info = log.isFile() ? JSONObject.parseObject(ReadWriteUtils.orgin(log).read()) : null;
+			Map<Integer, String> uploaded = new ConcurrentHashMap<>(); // 已上传的分块及其md5
+			if (!Judge.isNull(info) && url.equals(info.getString("url")) && info.getLongValue("fileSize") == size && info.getLongValue("chunkSize") == chunkSize
+					&& info.getLongValue("lastModified") == file.lastModified()) { // 文件和上传配置未改变时继续上传
+				info.getJSONObject("chunks").forEach((index, hash) -> uploaded.put(Integer.parseInt(index), (String) hash));
+			} else {
+				info = new JSONObject();
+				info.put("url", url);
+				info.put("fileSize", size);
+				info.put("chunkSize", chunkSize);
+				info.put("lastModified", file.lastModified());
+			}
+			JSONObject journal = info;
+			hostLimiter = RateLimiter.host(URIUtils.getDomain(url));
+			MessageDigest md5 = md5();
+			Semaphore slots = new Semaphore(UPLOAD_THREADS + 1); // 限制读取后等待上传的分块数量
+			AtomicInteger failure = new AtomicInteger(); // 上传失败的状态码
+			ExecutorService executor = Executors.newFixedThreadPool(UPLOAD_THREADS); // 停止时等待中的分块直接结束,不中断线程以便归还缓冲区
+			org.haic.often.Network.Response last = null;
+			try (InputStream in = new FileInputStream(file)) {
+				for (int i = 0; i < count && !stopped && failure.get() == 0; i++) {
+					long start = i * chunkSize;
+					int length = (int) Math.min(chunkSize, size - start);
+					slots.acquire();
+					ByteBuffer chunk = BufferPool.heap(length);
+					boolean handed = false; // 缓冲区和上传名额是否已交由上传任务归还
+					try {
+						byte[] data = chunk.array();
+						if (in.readNBytes(data, 0, length) != length) {
+							throw new IOException("file changed during upload: " + file);
+						}
+						md5.update(data, 0, length);
+						MessageDigest chunkDigest = md5();
+						chunkDigest.update(data, 0, length);
+						String hash = HexFormat.of().formatHex(chunkDigest.digest());
+						int index = i;
+						Callable<org.haic.often.Network.Response> upload = () -> {
+							try {
+								if (hash.equals(uploaded.get(index)) || failure.get() != 0) { // 分块已上传或其它分块上传失败
+									return null;
+								}
+								org.haic.often.Network.Response res = uploadChunk(name, data, start, length, size);
+								if (URIUtils.statusIsNormal(res.statusCode())) {
+									uploaded.put(index, hash);
+									synchronized (journal) {
+										journal.put("chunks", new TreeMap<>(uploaded));
+										ReadWriteUtils.orgin(log).append(false).write(journal.toJSONString());
+									}
+								} else {
+									failure.compareAndSet(0, res.statusCode());
+								}
+								return res;
+							} finally {
+								BufferPool.release(chunk);
+								slots.release();
+							}
+						};
+						if (index < count - 1) {
+							executor.execute(new ParameterizedThread<>(() -> {
+								try {
+									upload.call();
+								} catch (Exception e) {
+									failure.compareAndSet(0, HttpStatus.SC_REQUEST_TIMEOUT);
+								}
+							}));
+							handed = true;
+						} else { // 最后一个分块在其它分块上传完成后发送
+							executor.shutdown();
+							MultiThreadUtil.waitForEnd(executor);
+							if (!stopped && failure.get() == 0) {
+								handed = true;
+								last = upload.call();
+							}
+						}
+					} finally {
+						if (!handed) { // 读取失败或未上传时归还缓冲区和上传名额
+							BufferPool.release(chunk);
+							slots.release();
+						}
+					}
+				}
+			} catch (InterruptedException e) {
+				stopped = true;
+			} catch (Exception e) {
+				failure.compareAndSet(0, HttpStatus.SC_REQUEST_TIMEOUT);
+			} finally {
+				executor.shutdown();
+				MultiThreadUtil.waitForEnd(executor);
+			}
+			if (stopped) {
+				return new HttpResponse(this, request.statusCode(HttpStatus.SC_CLIENT_CLOSED_REQUEST));
+			} else if (failure.get() != 0) {
+				if (errorExit) {
+					throw new RuntimeException("文件上传失败，状态码: " + failure.get() + " URL: " + url);
+				}
+				return new HttpResponse(this, request.statusCode(failure.get()));
+			}
+			log.delete();
+			request.setHash(HexFormat.of().formatHex(md5.digest()));
+			if (Judge.isNull(last)) { // 所有分块在之前已上传
+				return new HttpResponse(this, request.statusCode(HttpStatus.SC_OK));
+			}
+			request.headers(last.headers()).cookies(last.cookies());
+			return new HttpResponse(this, request.statusCode(last.statusCode()).setBody(last.body()));
+		}
+
+		/**
+		 * 上传单个分块,请求超时或状态码在重试列表中时重新发送
+		 *
+		 * @param name   文件名
+		 * @param data   分块数据
+		 * @param start  分块在文件中的起始位
+		 * @param length 分块长度
+		 * @param size   文件大小
+		 * @return 上传结果
+		 */
+		@Contract(pure = true) protected org.haic.often.Network.Response uploadChunk(@NotNull String name, byte[] data, long start, int length, long size) {
+			org.haic.often.Network.Response[] res = new org.haic.often.Network.Response[1];
+			int statusCode = HttpStatus.SC_REQUEST_TIMEOUT;
+			for (int i = 0; !stopped && (i == 0 || (URIUtils.statusIsTimeout(statusCode) || retryStatusCodes.contains(statusCode)) && (i <= retry || unlimit)); i++) {
+				if (i > 0) {
+					MultiThreadUtil.waitForThread(MILLISECONDS_SLEEP);
+				}
+				InputStream body = new ByteArrayInputStream(data, 0, length);
+				InputStream in = stoppable(hostLimiter.wrap(Judge.isNull(limiter) ? body : limiter.wrap(body))); // 上传限速
+				statusCode = withPermits(() -> (res[0] = HttpsUtil.connect(url).proxy(proxy).headers(headers).cookies(cookies)
+						.header("content-range", "bytes " + start + "-" + (start + length - 1) + "/" + size).file(name, in)
+						.method(org.haic.often.Network.Method.POST).execute()).statusCode());
+			}
+			if (Judge.isNull(res[0])) { // 停止时未发送请求
+				throw new CancellationException("upload stopped");
+			}
+			return res[0];
+		}
+
+		/**
+		 * 获取md5计算器
+		 *
+		 * @return md5计算器
+		 */
+		@Contract(pure = true) protected static MessageDigest md5() {
+			try {
+				return MessageDigest.getInstance("MD5");
+			} catch (NoSuchAlgorithmException e) {
+				throw new RuntimeException(e);
+			}
+		}
+
+		/**
+		 * 关闭未读取的响应体,剩余数据较少时连接在读取完毕后归还连接池复用,否则关闭连接
+		 *
+		 * @param res 响应
+		 */
+		@Contract(pure = true) protected static void discard(@NotNull org.haic.often.Network.Response res) {
+			try {
+				InputStream in = res.bodyStream();
+				if (!Judge.isNull(in)) { // 关闭响应流即可
+					in.close();
+				}
 			} catch (IOException e) {
-				return new HttpResponse(this, request.statusCode(HttpStatus.SC_REQUEST_TIMEOUT));
+				// 连接已关闭
+			}
+		}
+
+		/**
+		 * 获取停止上传时读取失败的输入流
+		 *
+		 * @param in 输入流
+		 * @return 可停止的输入流
+		 */
+		@Contract(pure = true) protected InputStream stoppable(@NotNull InputStream in) {
+			return new FilterInputStream(in) {
+				@Override public int read() throws IOException {
+					if (stopped) {
+						throw new InterruptedIOException("upload stopped");
+					}
+					return super.read();
+				}
+
+				@Override public int read(byte[] b, int off, int len) throws IOException {
+					if (stopped) {
+						throw new InterruptedIOException("upload stopped");
+					}
+					return super.read(b, off, len);
+				}
+			};
+		}
+
+		@Contract(pure = true) public CompletableFuture<Response> uploadAsync(@NotNull String filePath) {
+			return uploadAsync(new File(filePath));
+		}
+
+		@Contract(pure = true) public CompletableFuture<Response> uploadAsync(@NotNull File file) {
+			return uploadAsync(file, ASYNC_EXECUTOR);
+		}
+
+		@Contract(pure = true) public CompletableFuture<Response> uploadAsync(@NotNull File file, @NotNull Executor executor) {
+			return async(() -> uploadFile(file), executor);
+		}
+
+		@Contract(pure = true) public CompletableFuture<Response> downloadAsync() {
+			return downloadAsync(FilesUtils.getDownloadsPath());
+		}
+
+		@Contract(pure = true) public CompletableFuture<Response> downloadAsync(@NotNull String folderPath) {
+			return downloadAsync(new File(folderPath));
+		}
+
+		@Contract(pure = true) public CompletableFuture<Response> downloadAsync(@NotNull File folder) {
+			return downloadAsync(folder, ASYNC_EXECUTOR);
+		}
+
+		@Contract(pure = true) public CompletableFuture<Response> downloadAsync(@NotNull File folder, @NotNull Executor executor) {
+			return async(() -> downloadFile(folder), executor);
+		}
+
+		/**
+		 * 在线程池中执行上传或下载,取消返回的Future时停止所有连接,下载的断点续传信息会被保留
+		 *
+		 * @param transfer 上传或下载
+		 * @param executor 线程池
+		 * @return CompletableFuture对象
+		 */
+		@Contract(pure = true) protected CompletableFuture<Response> async(@NotNull Callable<Response> transfer, @NotNull Executor executor) {
+			CompletableFuture<Response> future = new CompletableFuture<>() {
+				@Override public boolean cancel(boolean mayInterruptIfRunning) {
+					synchronized (this) { // 与重置停止标志互斥
+						boolean cancelled = super.cancel(mayInterruptIfRunning);
+						if (cancelled) {
+							stop();
+						}
+						return cancelled;
+					}
+				}
+			};
+			reset(future); // 在任务发布前重置停止标志,之后的取消不会被覆盖
+			try {
+				executor.execute(() -> {
+					if (future.isDone()) { // 重置停止标志后,开始前已取消
+						return;
+					}
+					try {
+						future.complete(transfer.call());
+					} catch (Throwable e) {
+						future.completeExceptionally(e);
+					}
+				});
+			} catch (RejectedExecutionException e) {
+				future.completeExceptionally(e);
+			}
+			return future;
+		}
+
+		/**
+		 * 重置停止标志,持有取消操作使用的监视器时进行,重置后到达的取消不会被覆盖
+		 * <p>
+		 * 同步上传和下载在开始时重置,通过 {@link #async(Callable, Executor)} 运行的传输在任务发布前重置,下载管理器在任务重新排队时重置
+		 *
+		 * @param monitor 取消操作使用的监视器
+		 */
+		@Contract(pure = true) protected void reset(@NotNull Object monitor) {
+			synchronized (monitor) {
+				stopped = false;
 			}
-			return new HttpResponse(this, request.statusCode(res.statusCode()).setBody(res.body()));
 		}
 
 		@Contract(pure = true) public Response download() {
@@ -535,7 +1019,211 @@ public class NetworkUtil {
 		}
 
 		@Contract(pure = true) public Response download(@NotNull File folder) {
-			return download(folder, method);
+			reset(this); // 同步下载开始时重置停止标志,之前取消的异步任务不影响此次下载
+			return downloadFile(folder);
+		}
+
+		/**
+		 * 下载文件,相同URL和存放路径的下载同时只进行一次,不重置停止标志,由同步下载, {@link #async(Callable, Executor)} 和下载管理器调用
+		 *
+		 * @param folder 文件存放目录
+		 * @return 下载结果
+		 */
+		@Contract(pure = true) protected Response downloadFile(@NotNull File folder) {
+			String key = url + " -> " + new File(folder, Judge.isEmpty(fileName) ? "" : fileName).getAbsolutePath();
+			while (true) {
+				CompletableFuture<Response> flight = new CompletableFuture<>();
+				CompletableFuture<Response> leader = FLIGHTS.putIfAbsent(key, flight);
+				if (Judge.isNull(leader)) {
+					try {
+						Response res = download(folder, method);
+						flight.complete(res);
+						return res;
+					} catch (Throwable e) {
+						flight.completeExceptionally(e);
+						throw e;
+					} finally {
+						FLIGHTS.remove(key, flight);
+						release();
+					}
+				}
+				if (!await(leader)) { // 等待时被停止或中断
+					return new HttpResponse(this, request.statusCode(HttpStatus.SC_CLIENT_CLOSED_REQUEST));
+				}
+				Response res;
+				try {
+					res = leader.join(); // 共享相同下载的结果
+				} catch (CompletionException e) {
+					if (e.getCause() instanceof RuntimeException cause) {
+						throw cause;
+					} else if (e.getCause() instanceof Error cause) {
+						throw cause;
+					}
+					throw e;
+				}
+				if (res.statusCode() != HttpStatus.SC_CLIENT_CLOSED_REQUEST || stopped) {
+					return res;
+				} // 正在进行的下载被停止,由当前连接重新下载
+			}
+		}
+
+		/**
+		 * 等待其它连接正在进行的下载结束,等待期间定时检查停止标志,以便暂停或取消当前连接
+		 *
+		 * @param flight 正在进行的下载
+		 * @return 下载是否已结束,等待时被停止或中断返回false
+		 */
+		@Contract(pure = true) protected boolean await(@NotNull Future<?> flight) {
+			while (!stopped) {
+				try {
+					flight.get(100, TimeUnit.MILLISECONDS);
+					return true;
+				} catch (TimeoutException e) {
+					// 继续等待
+				} catch (ExecutionException e) {
+					return true;
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					return false;
+				}
+			}
+			return false;
+		}
+
+		/**
+		 * 占用存放路径,同一文件同时只由一个连接下载,不同URL解析出相同的文件名时同样互斥
+		 *
+		 * @param storage 存放路径
+		 * @return 占用成功返回null,否则返回正在下载该文件的下载
+		 */
+		@Contract(pure = true) protected CompletableFuture<Response> claim(@NotNull File storage) {
+			String key = storage.getAbsolutePath();
+			if (key.equals(claimed)) { // 当前连接已占用(转为会话配置下载时)
+				return null;
+			}
+			CompletableFuture<Response> flight = new CompletableFuture<>();
+			CompletableFuture<Response> other = FLIGHTS.putIfAbsent(key, flight);
+			if (Judge.isNull(other)) {
+				claimed = key;
+				claim = flight;
+			}
+			return other;
+		}
+
+		/**
+		 * 释放占用的存放路径,唤醒等待该文件的连接
+		 */
+		@Contract(pure = true) protected void release() {
+			if (!Judge.isNull(claim)) {
+				FLIGHTS.remove(claimed, claim);
+				claim.complete(null);
+				claim = null;
+				claimed = null;
+			}
+		}
+
+		@Contract(pure = true) public Response download(@NotNull OutputStream output) {
+			reset(this); // 同步下载开始时重置停止标志,之前取消的异步任务不影响此次下载
+			WritableByteChannel channel = Channels.newChannel(output);
+			Response res = downloadStream(buffer -> {
+				try {
+					while (buffer.hasRemaining()) {
+						channel.write(buffer);
+					}
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			});
+			try {
+				output.flush();
+			} catch (IOException e) {
+				return new HttpResponse(this, request.statusCode(HttpStatus.SC_CONSUMER_ERROR));
+			}
+			return res;
+		}
+
+		@Contract(pure = true) public Response download(@NotNull Consumer<ByteBuffer> consumer) {
+			reset(this); // 同步下载开始时重置停止标志,之前取消的异步任务不影响此次下载
+			return downloadStream(consumer);
+		}
+
+		/**
+		 * 按顺序下载并交付给消费者,不重置停止标志
+		 *
+		 * @param consumer 数据消费者
+		 * @return 下载结果
+		 */
+		@Contract(pure = true) protected Response downloadStream(@NotNull Consumer<ByteBuffer> consumer) {
+			initializationStatus(); // 初始化
+			org.haic.often.Network.Response[] head = new org.haic.often.Network.Response[1];
+			int statusCode = withPermits(() -> (head[0] = HttpsUtil.connect(url).proxy(proxy).headers(headers).cookies(cookies).retry(retry, MILLISECONDS_SLEEP).retry(unlimit)
+					.retryStatusCodes(retryStatusCodes).errorExit(errorExit).execute()).statusCode());
+			org.haic.often.Network.Response res = head[0];
+			if (!URIUtils.statusIsOK(statusCode)) {
+				if (!Judge.isNull(res)) { // 等待连接许可时被停止,没有发送请求
+					discard(res);
+				}
+				return new HttpResponse(this, request.statusCode(statusCode));
+			}
+			request.headers(res.headers()).cookies(res.cookies());
+			String contentLength = res.header("content-length"); // 获取文件大小
+			request.setFileSize(fileSize = Judge.isNull(contentLength) ? fileSize : Long.parseLong(contentLength));
+			hash = Judge.isEmpty(hash) ? URIUtils.getHash(request.headers()) : hash; // 获取文件hash
+			request.setHash(Judge.isNull(hash) ? null : (hash = hash.toLowerCase()));
+			initializationSources();
+			// 重排窗口内的分块可以并行下载,超出窗口的分块等待按顺序交付后再写入,缓冲数据不超过窗口大小
+			long pieceSize = Math.max(PIECE_MAX_SIZE, PIECE_MIN_SIZE), window = pieceSize * MAX_THREADS * 2;
+			ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor(); // 定时回调下载进度
+			try (StreamWriter writer = new StreamWriter(consumer, window, DEFAULT_BUFFER_SIZE)) {
+				this.writer = writer;
+				if (valid && !Judge.isEmpty(hash) && !Judge.isNull(StreamDigest.algorithm(hash))) { // 按顺序交付时同步计算hash
+					writer.digest(new StreamDigest(hash));
+				}
+				if (!Judge.isNull(listener)) {
+					metrics.start(0);
+					reporter.scheduleAtFixedRate(this::progress, PROGRESS_INTERVAL, PROGRESS_INTERVAL, TimeUnit.MILLISECONDS);
+				}
+				if (Judge.isEmpty(fileSize) || method == Method.FULL) {
+					statusCode = FULL(res, retry);
+				} else {
+					discard(res); // 分块下载不使用此响应体
+					statusCode = MULTITHREAD((int) Math.ceil((double) fileSize / (double) pieceSize), pieceSize);
+				}
+				writer.flush();
+				MultiThreadUtil.waitForEnd(reporter);
+				if (!Judge.isNull(listener)) {
+					progress(); // 回调最终进度
+				}
+			} catch (StorageException e) {
+				statusCode = e.statusCode;
+			} catch (IOException e) {
+				statusCode = HttpStatus.SC_REQUEST_TIMEOUT;
+			} finally {
+				reporter.shutdownNow();
+			}
+			if (URIUtils.statusIsOK(statusCode) && valid && !Judge.isEmpty(hash)) { // 效验交付数据的完整性,文件大小未知时以实际交付的大小为准
+				String streamHash = writer.hash(Judge.isEmpty(fileSize) ? schedule.get() : fileSize).orElse(null);
+				if (!Judge.isNull(streamHash) && !streamHash.equals(hash)) {
+					if (errorExit) {
+						throw new RuntimeException("File verification is not accurate, Server md5:" + hash + " Local md5: " + streamHash + " URL: " + url);
+					}
+					statusCode = HttpStatus.SC_SERVER_RESOURCE_ERROR;
+				}
+			}
+			if (!URIUtils.statusIsOK(statusCode) && errorExit) {
+				throw new RuntimeException("文件下载失败，状态码: " + statusCode + " URL: " + url);
+			}
+			return new HttpResponse(this, request.statusCode(URIUtils.statusIsOK(statusCode) ? HttpStatus.SC_OK : statusCode));
+		}
+
+		/**
+		 * 初始化分块下载源和域名限速器
+		 */
+		@Contract(pure = true) protected void initializationSources() {
+			hostLimiter = RateLimiter.host(URIUtils.getDomain(url));
+			sources = new ArrayList<>();
+			sources.add(new Source(url));
+			mirrors.stream().filter(l -> !l.equals(url)).map(Source::new).forEach(sources::add);
 		}
 
 		@Contract(pure = true) protected Response download(@NotNull File folder, @NotNull Method method) {
@@ -545,25 +1233,44 @@ public class NetworkUtil {
 			case FILE -> {
 				method = Method.valueOf(fileInfo.getString("method"));
 				MAX_THREADS = fileInfo.getInteger("threads");
+				MIN_THREADS = fileInfo.getIntValue("minThreads");
 				storage = new File(folder, fileName); // 获取其file对象
+				for (CompletableFuture<Response> other; !Judge.isNull(other = claim(storage)); ) { // 其它连接正在下载同一文件
+					if (!await(other)) {
+						return new HttpResponse(this, request.statusCode(HttpStatus.SC_CLIENT_CLOSED_REQUEST));
+					} else if (!session.isFile()) { // 已由其它连接下载完成或重置,重新获取文件信息
+						return download(folder, method);
+					}
+					fileInfo.putAll(JSONObject.parseObject(ReadWriteUtils.orgin(session).read())); // 重新读取会话配置
+				}
 				JSONObject renew = fileInfo.getJSONObject("renew");
-				if (storage.exists() && !Judge.isNull(renew)) {
+				long completed = storage.exists() ? Journal.replay(new File(storage + JOURNAL_SUFFIX), status) : -1; // 回放断点续传日志
+				if (completed > -1) {
+					schedule.set(MAX_COMPLETED = completed);
+				} else if (storage.exists() && !Judge.isNull(renew)) { // 兼容旧版本配置文件中的断点信息
 					schedule.set(MAX_COMPLETED = renew.getLong("completed"));
-					String statusJson = renew.getString("status");
-					if (!Judge.isNull(statusJson)) {
-						status.putAll(StringUtils.jsonToMap(renew.getString("status")));
+					JSONObject statusJson = renew.getJSONObject("status");
+					if (!Judge.isNull(statusJson)) { // JSON键为字符串,需转换为分块起始位
+						statusJson.forEach((start, flip) -> status.put(Long.parseLong(start), ((Number) flip).longValue()));
 					}
 				}
 				fileInfo.remove("renew");
 			}
 			case FULL, PIECE, MULTITHREAD, MANDATORY -> {    // 获取文件信息
-				res = HttpsUtil.connect(url).proxy(proxy).headers(headers).cookies(cookies).retry(retry, MILLISECONDS_SLEEP).retry(unlimit)
-						.retryStatusCodes(retryStatusCodes).errorExit(errorExit).execute();
+				if (!Judge.isEmpty(fileName) && fetch(folder)) { // 已知hash和文件名时,优先使用本地下载缓存,无需访问网络
+					return new HttpResponse(this, request.statusCode(HttpStatus.SC_OK));
+				}
+				org.haic.often.Network.Response[] head = new org.haic.often.Network.Response[1]; // 获取文件信息的请求同样占用连接许可
+				int statusCode = withPermits(() -> (head[0] = HttpsUtil.connect(url).proxy(proxy).headers(headers).cookies(cookies).retry(retry, MILLISECONDS_SLEEP)
+						.retry(unlimit).retryStatusCodes(retryStatusCodes).errorExit(errorExit).execute()).statusCode());
 				// 获取URL连接状态
-				int statusCode = res.statusCode();
 				if (!URIUtils.statusIsOK(statusCode)) {
+					if (!Judge.isNull(head[0])) { // 等待连接许可时被停止,没有发送请求
+						discard(head[0]);
+					}
 					return new HttpResponse(this, request.statusCode(statusCode));
 				}
+				res = head[0];
 				request.headers(res.headers()).cookies(res.cookies());
 				// 获取文件名
 				if (Judge.isEmpty(fileName)) {
@@ -582,25 +1289,47 @@ public class NetworkUtil {
 				// 获取待下载文件和配置文件对象
 				request.setStorage(storage = new File(folder, fileName)); // 获取其file对象
 				session = new File(storage + SESSION_SUFFIX); // 配置信息文件后缀
+				CompletableFuture<Response> other = claim(storage);
+				if (!Judge.isNull(other)) { // 其它连接正在下载同一文件,结束后重新检查文件状态
+					discard(res);
+					return await(other) ? download(folder, method) : new HttpResponse(this, request.statusCode(HttpStatus.SC_CLIENT_CLOSED_REQUEST));
+				}
 
 				if (session.exists()) { // 转为会话配置
+					discard(res);
 					session(session);
 					return download(folder, Method.FILE);
 				} else if (storage.exists()) { // 文件已存在,返回完成
+					discard(res);
 					return new HttpResponse(this, request.statusCode(HttpStatus.SC_OK));
 				}
 
 				String contentLength = res.header("content-length"); // 获取文件大小
 				request.setFileSize(fileSize = Judge.isNull(contentLength) ? fileSize : Long.parseLong(contentLength));
 				method = Judge.isEmpty(fileSize) ? Method.FULL : method;// 如果文件大小获取失败或线程为1，使用全量下载模式
+				if (method != Method.FULL) { // 分块下载不使用此响应体
+					discard(res);
+				}
 				hash = Judge.isEmpty(hash) ? URIUtils.getHash(request.headers()) : hash; // 获取文件hash
 				request.setHash(Judge.isNull(hash) ? null : (hash = hash.toLowerCase()));
+				if (fetch(folder)) { // 本地下载缓存中存在相同hash的文件
+					discard(res);
+					return new HttpResponse(this, request.statusCode(HttpStatus.SC_OK));
+				}
 				// 创建并写入文件配置信息
 				fileInfo.put("fileName", fileName);
 				fileInfo.put("fileSize", fileSize);
 				fileInfo.put("hash", hash);
 				fileInfo.put("threads", MAX_THREADS);
+				fileInfo.put("minThreads", MIN_THREADS);
 				fileInfo.put("method", method.name());
+				if (!mirrors.isEmpty()) {
+					fileInfo.put("mirrors", mirrors);
+				}
+				if (!pieceHashes.isEmpty()) {
+					fileInfo.put("pieceLength", PIECE_HASH_SIZE);
+					fileInfo.put("pieceHash", pieceHashes);
+				}
 				fileInfo.put("header", JSONObject.toJSONString(headers));
 				fileInfo.put("cookie", JSONObject.toJSONString(cookies));
 				ReadWriteUtils.orgin(session).write(fileInfo.toJSONString());
@@ -608,36 +1337,78 @@ public class NetworkUtil {
 			default -> throw new RuntimeException("Unknown mode");
 			}
 
-			Runtime.getRuntime().addShutdownHook(abnormal = new Thread(() -> { // 异常退出时写入断点续传配置
-				JSONObject renew = new JSONObject();
-				renew.put("completed", MAX_COMPLETED);
-				renew.put("status", status);
-				ReadWriteUtils.orgin(session).append(false).write(fileInfo.fluentPut("renew", renew).toJSONString());
-			}));
+			Runtime.getRuntime().addShutdownHook(abnormal = new Thread(this::checkpoint)); // 异常退出时写入断点续传日志
+			initializationSources();
 			FilesUtils.createFolder(folder); // 创建文件夹
 			int statusCode;
-			switch (method) {  // 开始下载
-			case FULL -> statusCode = Judge.isNull(res) ? FULL(retry) : FULL(res, retry);
-			case PIECE -> statusCode = MULTITHREAD((int) Math.ceil((double) fileSize / (double) PIECE_MAX_SIZE), PIECE_MAX_SIZE);
-			case MULTITHREAD -> {
-				int PIECE_COUNT = Math.min((int) Math.ceil((double) fileSize / (double) PIECE_MAX_SIZE), MAX_THREADS);
-				statusCode = MULTITHREAD(PIECE_COUNT, (long) Math.ceil((double) fileSize / (double) PIECE_COUNT));
-			}
-			case MANDATORY -> statusCode = MULTITHREAD(MAX_THREADS, (long) Math.ceil((double) fileSize / (double) MAX_THREADS));
-			default -> throw new RuntimeException("Unknown mode");
+			ScheduledExecutorService checkpoints = Executors.newSingleThreadScheduledExecutor(); // 定时写入断点续传日志
+			ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor(); // 定时回调下载进度,不受日志写入磁盘的耗时影响
+			try (PieceWriter writer = this.writer = new PieceWriter(storage, fileSize, DEFAULT_BUFFER_SIZE); // 所有分块共用同一个文件通道
+					Journal journal = new Journal(new File(storage + JOURNAL_SUFFIX))) {
+				this.journal = journal;
+				if (WRITE_THREADS > 0) {
+					writer.writeBehind(storage, WRITE_THREADS, WRITE_QUEUE_SIZE);
+				}
+				if (valid && !Judge.isEmpty(hash) && !Judge.isNull(StreamDigest.algorithm(hash))) { // 下载时同步计算hash
+					writer.digest(new StreamDigest(hash));
+				}
+				Deque<Piece> missing = Judge.isNull(res) || method == Method.FULL ? null : seed(); // 差异下载,从本地旧版本文件复制未改变的块
+				if (JOURNAL_INTERVAL > 0) {
+					checkpoints.scheduleWithFixedDelay(this::checkpoint, JOURNAL_INTERVAL, JOURNAL_INTERVAL, TimeUnit.MILLISECONDS);
+				}
+				if (!Judge.isNull(listener)) { // 在后台线程中定时回调进度,不影响下载线程
+					metrics.start(schedule.get());
+					reporter.scheduleAtFixedRate(this::progress, PROGRESS_INTERVAL, PROGRESS_INTERVAL, TimeUnit.MILLISECONDS);
+				}
+				if (!Judge.isNull(missing)) { // 只下载旧版本文件中不存在的块
+					statusCode = MULTITHREAD(missing);
+				} else {
+					switch (method) {  // 开始下载
+					case FULL -> {
+						org.haic.often.Network.Response response = res;
+						statusCode = withPermits(() -> FULL(response, retry));
+					}
+					case PIECE -> statusCode = MULTITHREAD((int) Math.ceil((double) fileSize / (double) PIECE_MAX_SIZE), PIECE_MAX_SIZE);
+					case MULTITHREAD -> {
+						int PIECE_COUNT = Math.min((int) Math.ceil((double) fileSize / (double) PIECE_MAX_SIZE), MAX_THREADS);
+						statusCode = MULTITHREAD(PIECE_COUNT, (long) Math.ceil((double) fileSize / (double) PIECE_COUNT));
+					}
+					case MANDATORY -> statusCode = MULTITHREAD(MAX_THREADS, (long) Math.ceil((double) fileSize / (double) MAX_THREADS));
+					default -> throw new RuntimeException("Unknown mode");
+					}
+				}
+				MultiThreadUtil.waitForEnd(checkpoints);
+				MultiThreadUtil.waitForEnd(reporter);
+				checkpoint(); // 写入最终断点位置
+				if (!Judge.isNull(listener)) {
+					progress(); // 回调最终进度
+				}
+				// 存在分块hash时,如果文件hash不存在或下载时计算的hash不正确,效验分块并重新下载错误的分块
+				if (URIUtils.statusIsOK(statusCode) && valid && !pieceHashes.isEmpty() && !writer.hash(storage.length()).map(l -> l.equals(hash)).orElse(false)) {
+					statusCode = repair();
+					checkpoint();
+				}
+			} catch (StorageException e) {
+				statusCode = e.statusCode;
+			} catch (IOException e) {
+				statusCode = HttpStatus.SC_REQUEST_TIMEOUT;
+			} finally {
+				checkpoints.shutdownNow();
+				reporter.shutdownNow();
 			}
+			Runtime.getRuntime().removeShutdownHook(abnormal);
 			if (!URIUtils.statusIsOK(statusCode)) { // 验证下载状态
 				if (errorExit) {
 					throw new RuntimeException("文件下载失败，状态码: " + statusCode + " URL: " + url);
 				}
 				return new HttpResponse(this, request.statusCode(statusCode));
 			}
-			Runtime.getRuntime().removeShutdownHook(abnormal);
 
-			// 效验文件完整性
+			// 效验文件完整性,优先使用下载时计算的hash,未计算完成时读取文件计算
 			String fileHash;
-			if (valid && !Judge.isEmpty(hash) && !(fileHash = FilesUtils.hashGet(storage, hash)).equals(hash)) {
+			if (valid && !Judge.isEmpty(hash) && !(fileHash = writer.hash(storage.length()).orElseGet(() -> FilesUtils.hashGet(storage, hash))).equals(hash)) {
 				storage.delete(); // 删除下载错误的文件
+				new File(storage + JOURNAL_SUFFIX).delete(); // 删除断点续传日志
 				ReadWriteUtils.orgin(session).append(false).write(fileInfo.toJSONString()); // 重置信息文件
 				String errorText;
 				if (unlimit) {
@@ -657,134 +1428,1541 @@ public class NetworkUtil {
 				}
 			}
 
+			if (!Judge.isNull(store) && valid && !Judge.isEmpty(hash)) { // 效验通过的文件加入本地下载缓存
+				store.put(hash, storage);
+			}
 			session.delete(); // 删除会话信息文件
+			new File(storage + JOURNAL_SUFFIX).delete(); // 删除断点续传日志
 			return new HttpResponse(this, request.statusCode(HttpStatus.SC_OK));
 		}
 
 		/**
-		 * 初始化下载进度
-		 */
-		@Contract(pure = true) protected void initializationStatus() {
-			schedule.set(0);
-			MAX_COMPLETED = 0;
-			status.clear();
-		}
-
-		/**
-		 * 全量下载，下载获取文件信息并写入文件
+		 * 差异下载,在旧版本文件中查找与清单相同的块并复制到存储文件,返回需要下载的分块
+		 * <p>
+		 * 相邻的缺失块合并后按分块大小拆分,相邻的复制块合并后作为已完成的分块记录,缺失块下载完成后断点位置可越过复制块继续推进,中断后继续下载时同样跳过复制块
 		 *
-		 * @param retry 重试次数
-		 * @return 下载并写入是否成功(状态码)
+		 * @return 需要下载的分块, 未启用差异下载或清单与文件大小不符时为null
+		 * @throws IOException 如果发生 I/O 异常
 		 */
-		@Contract(pure = true) protected int FULL(int retry) {
-			org.haic.often.Network.Response piece = HttpsUtil.connect(url).proxy(proxy).headers(headers).header("range", "bytes=" + MAX_COMPLETED + "-")
-					.cookies(cookies).errorExit(errorExit).execute();
-			return URIUtils.statusIsOK(piece.statusCode()) ? FULL(piece, retry) : unlimit || retry > 0 ? FULL(retry - 1) : piece.statusCode();
-		}
-
+		@Contract(pure = true) protected Deque<Piece> seed() throws IOException {
+			if (Judge.isNull(seed) || Judge.isNull(manifest) || manifest.fileSize() != fileSize || !seed.isFile()) {
+				return null;
+			}
+			long[] offsets = manifest.match(seed);
+			long blockSize = manifest.blockSize();
+			Deque<Piece> missing = new ArrayDeque<>();
+			Deque<Piece> copied = new ArrayDeque<>(); // 已从旧版本文件复制的块
+			ByteBuffer buffer = writer.buffer();
+			try (FileChannel input = FileChannel.open(seed.toPath(), StandardOpenOption.READ)) {
+				for (int i = 0; i < offsets.length; i++) {
+					long start = i * blockSize, end = Math.min(start + blockSize, fileSize);
+					if (offsets[i] < 0) { // 合并相邻的缺失块,并按分块大小拆分
+						Piece last = missing.peekLast();
+						if (!Judge.isNull(last) && last.end + 1 == start && last.end + 1 - last.start < Math.max(PIECE_MAX_SIZE, blockSize)) {
+							missing.pollLast();
+							missing.add(new Piece(last.start, end - 1));
+						} else {
+							missing.add(new Piece(start, end - 1));
+						}
+						continue;
+					}
+					for (long position = start; position < end; ) { // 复制旧版本文件中相同的块
+						int length = input.read(buffer.clear().limit((int) Math.min(buffer.capacity(), end - position)), offsets[i] + position - start);
+						if (length < 0) {
+							throw new EOFException("seed file changed: " + seed);
+						}
+						buffer = writer.write(buffer.flip(), position);
+						position += length;
+					}
+					Piece last = copied.peekLast();
+					if (!Judge.isNull(last) && last.end + 1 == start) { // 合并相邻的复制块
+						last.end = end - 1;
+					} else {
+						copied.add(new Piece(start, end - 1));
+					}
+				}
+			} finally {
+				writer.release(buffer);
+			}
+			synchronized (pieces) {
+				pieces.clear();
+				missing.forEach(l -> pieces.put(l.start, l));
+				for (Piece piece : copied) { // 复制块记录为已完成的分块,写入断点续传日志
+					piece.flip = piece.reserved = piece.end + 1;
+					pieces.put(piece.start, piece);
+					status.put(piece.start, piece.flip);
+				}
+			}
+			completedPiece(); // 断点位置越过开头的复制块
+			schedule.set(fileSize - missing.stream().mapToLong(l -> l.end + 1 - l.start).sum());
+			return missing;
+		}
+
+		/**
+		 * 从本地下载缓存获取文件,成功时删除残留的会话信息文件和断点续传日志
+		 *
+		 * @param folder 文件存放目录
+		 * @return 是否从缓存获取
+		 */
+		@Contract(pure = true) protected boolean fetch(@NotNull File folder) {
+			File target = new File(folder, fileName);
+			if (Judge.isNull(store) || Judge.isEmpty(hash) || !store.fetch(hash, target)) {
+				return false;
+			}
+			request.setStorage(storage = target).setFileSize(fileSize = target.length()).setHash(hash);
+			new File(target + SESSION_SUFFIX).delete();
+			new File(target + JOURNAL_SUFFIX).delete();
+			return true;
+		}
+
+		/**
+		 * 效验分块hash,仅重新下载效验失败的分块,直至全部分块效验通过或超过重试次数,未设置重试时修复一次
+		 *
+		 * @return 效验状态码
+		 */
+		@Contract(pure = true) protected int repair() {
+			long size = storage.length();
+			for (int i = 0; ; i++) {
+				Deque<Piece> failed = new ArrayDeque<>();
+				for (int index = 0; index < pieceHashes.size() && (long) index * PIECE_HASH_SIZE < size; index++) {
+					long start = index * PIECE_HASH_SIZE;
+					Piece piece = new Piece(start, Math.min(start + PIECE_HASH_SIZE, size) - 1);
+					try {
+						if (!writer.hash(start, piece.end + 1, pieceHashes.get(index)).equals(pieceHashes.get(index))) {
+							failed.add(piece);
+						}
+					} catch (IOException e) {
+						failed.add(piece);
+					}
+				}
+				if (failed.isEmpty()) {
+					return HttpStatus.SC_OK;
+				} else if (!unlimit && i > retry) {
+					return HttpStatus.SC_SERVER_RESOURCE_ERROR;
+				}
+				writer.digest = null; // 文件内容已改变,下载时计算的hash失效
+				synchronized (pieces) {
+					pieces.clear();
+					failed.forEach(l -> pieces.put(l.start, l));
+				}
+				schedule.addAndGet(-failed.stream().mapToLong(l -> l.end + 1 - l.start).sum());
+				int statusCode = MULTITHREAD(failed);
+				if (!URIUtils.statusIsOK(statusCode)) {
+					return statusCode;
+				}
+				try {
+					writer.flush();
+				} catch (IOException e) {
+					return HttpStatus.SC_REQUEST_TIMEOUT;
+				}
+			}
+		}
+
+		/**
+		 * 写入断点续传日志
+		 * <p>
+		 * 先记录断点位置,再将已写入数据刷新到磁盘,最后追加日志,保证日志中的位置不超过磁盘中实际写入的位置
+		 */
+		@Contract(pure = true) protected void checkpoint() {
+			if (Judge.isNull(writer) || Judge.isNull(journal)) {
+				return;
+			}
+			long completed;
+			Map<Long, Long> snapshot;
+			synchronized (pieces) {
+				completed = MAX_COMPLETED;
+				snapshot = new HashMap<>(status);
+			}
+			try {
+				writer.flush();
+				writer.force();
+				journal.append(completed, snapshot);
+				writer.digest(completed); // 读取已完成的连续数据计算hash,数据刚写入,通常位于系统缓存中
+			} catch (IOException e) {
+				// 忽略
+			}
+		}
+
+		/**
+		 * 初始化下载进度
+		 */
+		@Contract(pure = true) protected void initializationStatus() {
+			metrics = new Metrics();
+			schedule.set(0);
+			MAX_COMPLETED = 0;
+			status.clear();
+		}
+
+		/**
+		 * 全量下载，下载获取文件信息并写入文件
+		 *
+		 * @param retry 重试次数
+		 * @return 下载并写入是否成功(状态码)
+		 */
+		@Contract(pure = true) protected int FULL(int retry) {
+			return FULL(null, retry);
+		}
+
+		/**
+		 * 全量下载，下载获取文件信息并写入文件,请求失败或读取中断时从已下载的位置重新请求,本地写入失败时不再重试
+		 *
+		 * @param response 网页Response对象,为null时从已下载的位置发起请求
+		 * @param retry    重试次数
+		 * @return 下载并写入是否成功(状态码)
+		 */
+		@Contract(pure = true) protected int FULL(org.haic.often.Network.Response response, int retry) {
+			for (org.haic.often.Network.Response piece = response; ; piece = null, retry--) {
+				if (stopped) {
+					return HttpStatus.SC_CLIENT_CLOSED_REQUEST;
+				}
+				if (Judge.isNull(piece)) {
+					long time = System.nanoTime();
+					piece = HttpsUtil.connect(url).proxy(proxy).headers(headers).header("range", "bytes=" + MAX_COMPLETED + "-").cookies(cookies).errorExit(errorExit)
+							.execute();
+					metrics.connect(System.nanoTime() - time);
+				}
+				int statusCode = piece.statusCode();
+				if (URIUtils.statusIsOK(statusCode)) {
+					statusCode = writeFull(piece);
+					if (statusCode != HttpStatus.SC_REQUEST_TIMEOUT) { // 完成,停止或本地写入失败
+						return statusCode;
+					}
+				} else {
+					discard(piece);
+				}
+				if (!unlimit && retry <= 0) {
+					return statusCode;
+				}
+				metrics.retries.incrementAndGet();
+				MultiThreadUtil.waitForThread(MILLISECONDS_SLEEP);
+			}
+		}
+
+		/**
+		 * 读取全量下载的响应流并写入文件
+		 *
+		 * @param response 网页Response对象
+		 * @return 下载并写入是否成功(状态码), 读取中断或数据不完整时为 {@link HttpStatus#SC_REQUEST_TIMEOUT}
+		 */
+		@Contract(pure = true) protected int writeFull(@NotNull org.haic.often.Network.Response response) {
+			ByteBuffer buffer = writer.buffer();
+			long time = System.nanoTime();
+			boolean first = true;
+			try (ReadableByteChannel in = Channels.newChannel(response.bodyStream())) {
+				for (int len; !stopped && (len = in.read(buffer.clear())) > -1; MAX_COMPLETED = schedule.addAndGet(len)) {
+					long read = System.nanoTime();
+					metrics.read(first, read - time);
+					first = false;
+					throttle(len);
+					long write = System.nanoTime(); // 限速等待不计入写入耗时
+					buffer = writer.write(buffer.flip(), MAX_COMPLETED);
+					metrics.write((time = System.nanoTime()) - write);
+				}
+				if (stopped) {
+					return HttpStatus.SC_CLIENT_CLOSED_REQUEST;
+				} else if (fileSize == 0 || fileSize == MAX_COMPLETED) {
+					return HttpStatus.SC_OK;
+				}
+			} catch (StorageException e) {
+				return e.statusCode;
+			} catch (IOException e) {
+				// 从已下载的位置重试
+			} finally {
+				writer.release(buffer);
+			}
+			return HttpStatus.SC_REQUEST_TIMEOUT;
+		}
+
+		@Contract(pure = true) protected int MULTITHREAD(int PIECE_COUNT, long PIECE_SIZE) {
+			TreeSet<Long> starts = new TreeSet<>(status.keySet()); // 断点续传时,恢复被拆分的分块起始位
+			for (long i = MAX_COMPLETED / PIECE_SIZE; i < PIECE_COUNT; i++) {
+				starts.add(i * PIECE_SIZE);
+			}
+			starts.add(MAX_COMPLETED);
+			status.forEach((start, flip) -> starts.subSet(start, false, Math.max(start, flip), false).clear()); // 已写入的范围不再拆分,差异下载复制的块可能跨越多个分块
+			pieces.clear();
+			Deque<Piece> pending = new ArrayDeque<>(); // 等待下载的分块
+			for (long start : starts.tailSet(MAX_COMPLETED)) {
+				if (start < fileSize) {
+					Long next = starts.higher(start);
+					Piece piece = new Piece(start, Judge.isNull(next) ? fileSize - 1 : Math.min(next, fileSize) - 1);
+					piece.flip = piece.reserved = Math.max(status.getOrDefault(start, start), start); // 断点位置
+					schedule.addAndGet(piece.flip - start);
+					pieces.put(start, piece);
+					pending.add(piece);
+				}
+			}
+			return MULTITHREAD(pending);
+		}
+
+		/**
+		 * 多线程下载等待队列中的分块,空闲线程会拆分正在下载的分块
+		 *
+		 * @param pending 等待下载的分块
+		 * @return 下载并写入是否成功(状态码)
+		 */
+		@Contract(pure = true) protected int MULTITHREAD(@NotNull Deque<Piece> pending) {
+			AtomicInteger statusCodes = new AtomicInteger(HttpStatus.SC_OK);
+			AtomicInteger active = new AtomicInteger(); // 正在运行的线程数
+			Phaser workers = new Phaser(1); // 动态增减的下载线程
+			adaptive = MIN_THREADS > 0 && MIN_THREADS < MAX_THREADS ? new AdaptiveController(MIN_THREADS, MAX_THREADS, schedule.get()) : null;
+			int limit = Judge.isNull(adaptive) ? MAX_THREADS : adaptive.limit();
+			// 下载线程数已由MAX_THREADS限制,虚拟线程模式只替换线程的实现,不支持虚拟线程时同样使用固定大小的线程池
+			executorService = VIRTUAL_THREAD ? MultiThreadUtil.newVirtualThreadPerTaskExecutor(MAX_THREADS) : Executors.newFixedThreadPool(MAX_THREADS);
+			Runnable worker = new ParameterizedThread<>(() -> { // 执行多线程程
+				boolean retired = false;
+				try {
+					for (Piece piece; URIUtils.statusIsOK(statusCodes.get()) && !stopped && !(retired = retire(active)) && !Judge.isNull(piece = nextPiece(pending)); ) {
+						Piece current = piece;
+						int statusCode = current.isDone() ? HttpStatus.SC_PARTIAL_CONTENT : withPermits(() -> writePiece(current, retry));
+						completedPiece();
+						if (!URIUtils.statusIsOK(statusCode)) {
+							statusCodes.compareAndSet(HttpStatus.SC_OK, statusCode); // 保留最先失败的状态码
+							executorService.shutdownNow(); // 结束未开始的线程，并关闭线程池
+						}
+					}
+				} finally {
+					if (!retired) {
+						active.decrementAndGet();
+					}
+					workers.arriveAndDeregister();
+				}
+			});
+			for (int i = 0; i < Math.min(limit, pending.size()); i++) {
+				addWorker(workers, active, worker);
+			}
+			ScheduledExecutorService controller = Executors.newSingleThreadScheduledExecutor(); // 自适应调整线程数,或在获得下载线程许可后补足线程数
+			if (!Judge.isNull(adaptive) || !Judge.isNull(threads)) {
+				controller.scheduleAtFixedRate(() -> {
+					for (int i = active.get(), target = Judge.isNull(adaptive) ? limit : adaptive.adjust(schedule.get()); i < target; i++) {
+						if (!addWorker(workers, active, worker)) {
+							break;
+						}
+					}
+				}, ADAPTIVE_INTERVAL, ADAPTIVE_INTERVAL, TimeUnit.MILLISECONDS);
+			}
+			workers.arriveAndAwaitAdvance(); // 等待所有下载线程结束
+			controller.shutdownNow();
+			MultiThreadUtil.waitForEnd(executorService); // 等待线程结束
+			return stopped ? HttpStatus.SC_CLIENT_CLOSED_REQUEST : statusCodes.get();
+		}
+
+		/**
+		 * 获取连接许可(下载管理器设置的许可)后执行请求,完成后释放许可,未设置许可时直接执行
+		 *
+		 * @param request 请求
+		 * @return 请求状态码,等待许可时被中断返回 {@link HttpStatus#SC_CLIENT_CLOSED_REQUEST}
+		 */
+		@Contract(pure = true) protected int withPermits(@NotNull IntSupplier request) {
+			int acquired = 0;
+			try {
+				for (; acquired < permits.size(); acquired++) {
+					permits.get(acquired).acquire();
+				}
+				return stopped ? HttpStatus.SC_CLIENT_CLOSED_REQUEST : request.getAsInt();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt(); // 保留中断状态,调用方据此不再重试
+				return HttpStatus.SC_CLIENT_CLOSED_REQUEST;
+			} finally {
+				for (int i = 0; i < acquired; i++) {
+					permits.get(i).release();
+				}
+			}
+		}
+
+		/**
+		 * 停止当前下载,已下载的部分和断点续传信息会被保留,正在读取的请求在读取下一个缓冲区时结束
+		 */
+		@Contract(pure = true) protected void stop() {
+			stopped = true;
+			ExecutorService executor = executorService;
+			if (!Judge.isNull(executor)) {
+				executor.shutdownNow();
+			}
+		}
+
+		/**
+		 * 添加下载线程
+		 * <p>
+		 * 由下载管理器运行时,每个下载线程需要获取一个所有任务共用的下载线程许可,线程结束时归还,没有许可时只保留一个下载线程,因此所有任务的下载线程总数不随任务数和线程数设置增长
+		 *
+		 * @param workers 下载线程同步器
+		 * @param active  正在运行的线程数
+		 * @param worker  下载线程
+		 * @return 是否添加成功
+		 */
+		@Contract(pure = true) protected boolean addWorker(@NotNull Phaser workers, @NotNull AtomicInteger active, @NotNull Runnable worker) {
+			Semaphore threads = this.threads;
+			boolean permitted = !Judge.isNull(threads) && threads.tryAcquire();
+			if (!Judge.isNull(threads) && !permitted && active.get() > 0) {
+				return false;
+			}
+			if (workers.register() < 0) {
+				if (permitted) {
+					threads.release();
+				}
+				return false;
+			}
+			active.incrementAndGet();
+			try {
+				executorService.execute(permitted ? () -> {
+					try {
+						worker.run();
+					} finally {
+						threads.release();
+					}
+				} : worker);
+				return true;
+			} catch (RejectedExecutionException e) { // 线程池已关闭
+				if (permitted) {
+					threads.release();
+				}
+				active.decrementAndGet();
+				workers.arriveAndDeregister();
+				return false;
+			}
+		}
+
+		/**
+		 * 自适应模式下,运行线程数超过当前上限时,结束当前线程
+		 *
+		 * @param active 正在运行的线程数
+		 * @return 当前线程是否应结束
+		 */
+		@Contract(pure = true) protected boolean retire(@NotNull AtomicInteger active) {
+			if (Judge.isNull(adaptive)) {
+				return false;
+			}
+			for (int count; (count = active.get()) > adaptive.limit(); ) {
+				if (active.compareAndSet(count, count - 1)) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		/**
+		 * 获取下一个待下载的分块
+		 * <p>
+		 * 等待队列为空时,从正在下载的分块中选取剩余最大的分块,拆分其后半部分交由当前线程下载,避免尾部分块单线程运行
+		 *
+		 * @param pending 等待下载的分块
+		 * @return 分块, 没有可下载的分块时返回null
+		 */
+		@Contract(pure = true) protected Piece nextPiece(@NotNull Deque<Piece> pending) {
+			synchronized (pieces) {
+				Piece piece = pending.poll();
+				if (!Judge.isNull(piece)) {
+					return piece;
+				}
+				Piece largest = pieces.values().stream().filter(l -> !l.isDone()).max(Comparator.comparingLong(Piece::remaining)).orElse(null);
+				if (Judge.isNull(largest) || Judge.isNull(piece = largest.split(Math.max(PIECE_MIN_SIZE, DEFAULT_BUFFER_SIZE)))) {
+					return null;
+				}
+				status.put(piece.start, piece.start);
+				pieces.put(piece.start, piece);
+				return piece;
+			}
+		}
+
+		/**
+		 * 合并已完成的连续分块,更新断点位置
+		 */
+		@Contract(pure = true) protected void completedPiece() {
+			synchronized (pieces) {
+				for (Piece piece; !Judge.isNull(piece = pieces.get(MAX_COMPLETED)) && piece.isDone(); ) {
+					pieces.remove(piece.start);
+					status.remove(piece.start);
+					MAX_COMPLETED = piece.end + 1;
+				}
+			}
+		}
+
+		/**
+		 * 分块下载，选择下载源下载获取文件区块信息并写入文件
+		 * <p>
+		 * 请求失败时,如果存在其它可用的下载源,切换下载源重试且不消耗重试次数
+		 *
+		 * @param piece 分块信息
+		 * @param retry 重试次数
+		 * @return 下载并写入是否成功(状态码)
+		 */
+		@Contract(pure = true) protected int writePiece(@NotNull Piece piece, int retry) {
+			if (stopped) {
+				return HttpStatus.SC_CLIENT_CLOSED_REQUEST;
+			}
+			Source source = nextSource();
+			source.inflight.incrementAndGet();
+			int statusCode;
+			try {
+				statusCode = writePiece(piece, source);
+			} finally {
+				source.inflight.decrementAndGet();
+			}
+			if (URIUtils.statusIsOK(statusCode) || stopped || statusCode == HttpStatus.SC_STORAGE_ERROR || statusCode == HttpStatus.SC_CONSUMER_ERROR) { // 写入失败时重试请求无法恢复
+				return statusCode;
+			} else if (Thread.currentThread().isInterrupted()) { // 其它分块已失败并关闭线程池,中断状态下的请求会立即失败
+				return statusCode;
+			}
+			if (!Judge.isNull(adaptive)) { // 请求失败或被限流,通知减少线程
+				adaptive.error();
+			}
+			boolean failover = failover(source);
+			if (failover || unlimit || retry > 0) {
+				metrics.retries.incrementAndGet();
+				MultiThreadUtil.waitForThread(MILLISECONDS_SLEEP);
+				return writePiece(piece, failover ? retry : retry - 1);
+			}
+			return statusCode;
+		}
+
+		/**
+		 * 生成当前下载进度并回调监听器,由后台线程定时调用
+		 */
+		@Contract(pure = true) protected void progress() {
+			List<PieceState> states = new ArrayList<>();
+			synchronized (pieces) {
+				for (Piece piece : pieces.values()) {
+					states.add(new PieceState(piece.start, piece.end, piece.flip - piece.start, piece.isDone()));
+				}
+			}
+			try {
+				listener.accept(metrics.progress(fileSize, schedule.get(), states));
+			} catch (RuntimeException e) {
+				// 监听器异常不影响下载
+			}
+		}
+
+		/**
+		 * 向下载源发送分块请求并写入文件,启用HTTP/2时使用共享的HttpClient,否则使用 {@link HttpsUtil}
+		 *
+		 * @param piece  分块信息
+		 * @param source 下载源
+		 * @return 下载并写入是否成功(状态码)
+		 */
+		@Contract(pure = true) protected int writePiece(@NotNull Piece piece, @NotNull Source source) {
+			String range = "bytes=" + piece.flip + "-" + piece.end;
+			HttpClient client = http2Client();
+			long time = System.nanoTime();
+			try {
+				if (Judge.isNull(client)) {
+					org.haic.often.Network.Response res = HttpsUtil.connect(source.url).proxy(proxy).headers(headers).header("range", range).cookies(cookies).execute();
+					metrics.connect(System.nanoTime() - time);
+					if (URIUtils.statusIsOK(res.statusCode())) {
+						return writePiece(piece, res.bodyStream(), source);
+					}
+					discard(res);
+					return res.statusCode();
+				}
+				HttpRequest.Builder builder = HttpRequest.newBuilder(URIUtils.getURI(source.url)).header("range", range);
+				headers.entrySet().stream().filter(l -> !RESTRICTED_HEADERS.contains(l.getKey().toLowerCase())).forEach(l -> builder.header(l.getKey(), l.getValue()));
+				if (!cookies.isEmpty()) {
+					builder.header("cookie", cookies.entrySet().stream().map(l -> l.getKey() + "=" + l.getValue()).collect(Collectors.joining("; ")));
+				}
+				java.net.http.HttpResponse<InputStream> res = client.send(builder.build(), java.net.http.HttpResponse.BodyHandlers.ofInputStream());
+				metrics.connect(System.nanoTime() - time);
+				if (URIUtils.statusIsOK(res.statusCode())) {
+					return writePiece(piece, res.body(), source);
+				}
+				res.body().close(); // 取消响应流
+				return res.statusCode();
+			} catch (IOException e) {
+				return HttpStatus.SC_REQUEST_TIMEOUT;
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt(); // 保留中断状态,其它分块失败后不再重试此分块
+				return HttpStatus.SC_CLIENT_CLOSED_REQUEST;
+			}
+		}
+
+		/**
+		 * 获取当前代理对应的共享HTTP/2客户端,同一源站的分块请求复用少量连接并多路复用,服务器不支持HTTP/2时自动使用HTTP/1.1长连接
+		 *
+		 * @return HttpClient对象, 未启用HTTP/2或使用SOCKS代理(HttpClient不支持)时为null
+		 */
+		@Contract(pure = true) protected HttpClient http2Client() {
+			if (!HTTP2 || proxy.type() == Proxy.Type.SOCKS) {
+				return null;
+			}
+			return HTTP2_CLIENTS.computeIfAbsent(proxy, key -> HttpClient.newBuilder().version(HttpClient.Version.HTTP_2).followRedirects(HttpClient.Redirect.NORMAL)
+					.proxy(key.type() == Proxy.Type.HTTP ? ProxySelector.of((InetSocketAddress) key.address()) : HttpClient.Builder.NO_PROXY)
+					.sslContext(IgnoreSSLSocket.MyX509TrustManager()).executor(MultiThreadUtil.newVirtualThreadPerTaskExecutor()).build());
+		}
+
+		/**
+		 * 消耗限速器令牌,令牌不足时休眠
+		 *
+		 * @param bytes 已读取的字节数
+		 */
+		@Contract(pure = true) protected void throttle(long bytes) {
+			throttle(hostLimiter, bytes);
+		}
+
+		/**
+		 * 消耗限速器令牌,令牌不足时休眠
+		 *
+		 * @param hostLimiter 下载源的域名限速器
+		 * @param bytes       已读取的字节数
+		 */
+		@Contract(pure = true) protected void throttle(@NotNull RateLimiter hostLimiter, long bytes) {
+			if (!Judge.isNull(limiter)) {
+				limiter.acquire(bytes);
+			}
+			hostLimiter.acquire(bytes);
+		}
+
+		/**
+		 * 下载获取文件区块信息并写入文件,并记录下载源的速度
+		 * <p>
+		 * 分块结束位可能在下载过程中被其它线程拆分而缩小,写入时以当前结束位为准
+		 *
+		 * @param piece  分块信息
+		 * @param body   块响应流
+		 * @param source 下载源
+		 * @return 下载并写入是否成功(状态码)
+		 */
+		@Contract(pure = true) protected int writePiece(@NotNull Piece piece, @NotNull InputStream body, @NotNull Source source) {
+			ByteBuffer buffer = writer.buffer();
+			long time = System.nanoTime();
+			boolean first = true;
+			int statusCode = HttpStatus.SC_REQUEST_TIMEOUT;
+			try (ReadableByteChannel in = Channels.newChannel(body)) {
+				for (int len; !stopped && (len = piece.reserve(in.read(buffer.clear()))) > 0; status.put(piece.start, piece.flip += len), schedule.addAndGet(len)) {
+					long read = System.nanoTime();
+					source.record(len, read - time); // 实时记录下载源速度
+					metrics.read(first, read - time);
+					first = false;
+					throttle(source.limiter, len);
+					long write = System.nanoTime(); // 限速等待不计入写入耗时
+					buffer = writer.write(buffer.flip().limit(len), piece.flip);
+					metrics.write((time = System.nanoTime()) - write);
+				}
+				if (piece.isDone()) {
+					return HttpStatus.SC_PARTIAL_CONTENT;
+				}
+			} catch (StorageException e) {
+				statusCode = e.statusCode;
+			} catch (IOException e) {
+				// 忽略
+			} finally {
+				writer.release(buffer);
+			}
+			source.record(0, System.nanoTime() - time);
+			piece.reserve(0); // 回退未写入的预留位置
+			return stopped ? HttpStatus.SC_CLIENT_CLOSED_REQUEST : statusCode;
+		}
+
+		/**
+		 * 选择下载源,按照各下载源的速度比例分配连接,未测速的下载源优先
+		 *
+		 * @return 下载源
+		 */
+		@Contract(pure = true) protected Source nextSource() {
+			Source best = sources.get(0);
+			double score = -1;
+			for (Source source : sources) {
+				double current;
+				if (!source.dead && (current = source.speed() / (source.inflight.get() + 1)) > score) {
+					best = source;
+					score = current;
+				}
+			}
+			return best;
+		}
+
+		/**
+		 * 记录下载源请求失败,连续失败次数过多时弃用该下载源,最后一个可用的下载源不会被弃用
+		 *
+		 * @param source 下载源
+		 * @return 是否存在其它可用的下载源
+		 */
+		@Contract(pure = true) protected boolean failover(@NotNull Source source) {
+			synchronized (sources) {
+				long alive = sources.stream().filter(l -> !l.dead).count();
+				if (source.failures.incrementAndGet() >= MIRROR_MAX_FAILURES && !source.dead && alive > 1) {
+					source.dead = true;
+					alive--;
+				}
+				return source.dead ? alive > 0 : alive > 1;
+			}
+		}
+
+	}
+
+	/**
+	 * 下载文件写入器,在单次下载中由所有分块线程共用
+	 * <p>
+	 * 打开同一个文件通道按位置写入,避免每个分块重复打开文件和定位,写入缓冲区从全局缓冲区池借出直接内存并循环复用
+	 * <p>
+	 * 文件大小已知时,在下载开始前将文件扩展至该大小,各分块可直接按位置写入; Java没有提供fallocate, {@link RandomAccessFile#setLength(long)} 在Linux和macOS上只是稀疏扩展文件长度,不会预留磁盘空间,也不能减少文件碎片,磁盘空间不足时在写入数据时才会失败
+	 * <p>
+	 * 启用异步写入时,分块线程只负责读取网络数据并将缓冲区放入有界队列,由少量写入线程合并相邻数据块后写入磁盘,队列满时分块线程阻塞等待
+	 *
+	 * @author haicdust
+	 * @version 1.1
+	 * @since 2022/9/19 21:40
+	 */
+	protected static class PieceWriter implements Closeable {
+		protected final RandomAccessFile file;
+		protected final FileChannel channel;
+		protected final int bufferSize;
+
+		protected BlockingQueue<Block> blocks; // 异步写入队列
+		protected ExecutorService executorService; // 异步写入线程池
+		protected int pending; // 未完成写入的数据块数量
+		protected StorageException error; // 异步写入异常
+		protected StreamDigest digest; // 下载时计算的hash
+
+		protected PieceWriter(int bufferSize) {
+			this.file = null;
+			this.channel = null;
+			this.bufferSize = bufferSize;
+		}
+
+		protected PieceWriter(@NotNull File storage, long fileSize, int bufferSize) throws IOException {
+			this.file = new RandomAccessFile(storage, "rw");
+			this.channel = file.getChannel();
+			this.bufferSize = bufferSize;
+			if (file.length() < fileSize) { // 扩展文件长度,稀疏文件,不预留磁盘空间
+				file.setLength(fileSize);
+			}
+		}
+
+		/**
+		 * 启用异步写入
+		 *
+		 * @param storage   本地存储文件
+		 * @param nThread   写入线程数
+		 * @param queueSize 写入队列容量(数据块数量)
+		 * @return this
+		 */
+		@Contract(pure = true) protected PieceWriter writeBehind(@NotNull File storage, int nThread, int queueSize) {
+			blocks = new ArrayBlockingQueue<>(queueSize);
+			executorService = Executors.newFixedThreadPool(nThread);
+			for (int i = 0; i < nThread; i++) {
+				executorService.execute(new ParameterizedThread<>(() -> {
+					try (FileChannel output = FileChannel.open(storage.toPath(), StandardOpenOption.WRITE)) { // 每个写入线程使用独立通道,以便合并写入
+						for (List<Block> drain = new ArrayList<>(); !Thread.currentThread().isInterrupted(); drain.clear()) {
+							drain.add(blocks.take());
+							blocks.drainTo(drain, 63);
+							drain.sort(Comparator.comparingLong(Block::position));
+							writeBlocks(output, drain);
+						}
+					} catch (IOException | RuntimeException e) {
+						synchronized (this) {
+							error = Judge.isNull(error) ? new StorageException(e) : error;
+							notifyAll();
+						}
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+				}));
+			}
+			return this;
+		}
+
+		/**
+		 * 合并位置相邻的数据块,使用聚集写入
+		 *
+		 * @param output 写入通道
+		 * @param drain  按位置排序的数据块
+		 * @throws IOException 如果发生 I/O 异常
+		 */
+		@Contract(pure = true) protected void writeBlocks(@NotNull FileChannel output, @NotNull List<Block> drain) throws IOException {
+			for (int i = 0, j; i < drain.size(); i = j) {
+				long length = drain.get(i).buffer().remaining();
+				for (j = i + 1; j < drain.size() && drain.get(j).position() == drain.get(i).position() + length; j++) {
+					length += drain.get(j).buffer().remaining();
+				}
+				ByteBuffer[] group = drain.subList(i, j).stream().map(Block::buffer).toArray(ByteBuffer[]::new);
+				output.position(drain.get(i).position());
+				for (long written = 0; written < length; ) {
+					written += output.write(group);
+				}
+				for (ByteBuffer buffer : group) {
+					release(buffer);
+				}
+				synchronized (this) {
+					pending -= j - i;
+					notifyAll();
+				}
+			}
+		}
+
+		/**
+		 * 从全局缓冲区池借出直接内存缓冲区,容量不小于缓冲区大小,使用完毕后需调用 {@link #release(ByteBuffer)} 归还
+		 *
+		 * @return 缓冲区
+		 */
+		@Contract(pure = true) protected ByteBuffer buffer() {
+			return BufferPool.direct(bufferSize);
+		}
+
+		/**
+		 * 归还缓冲区
+		 *
+		 * @param buffer 缓冲区
+		 */
+		@Contract(pure = true) protected void release(@NotNull ByteBuffer buffer) {
+			BufferPool.release(buffer);
+		}
+
+		/**
+		 * 将缓冲区剩余数据写入文件指定位置,不改变文件通道位置,可多线程同时调用
+		 * <p>
+		 * 异步写入时缓冲区交由写入线程处理,调用方应使用返回的缓冲区继续读取,队列满时阻塞等待,写入线程出现异常后不再等待
+		 *
+		 * @param buffer   缓冲区
+		 * @param position 写入位置
+		 * @return 可继续使用的缓冲区
+		 * @throws StorageException 如果写入本地文件失败,重试请求无法恢复
+		 * @throws IOException      如果等待写入队列时被中断
+		 */
+		@Contract(pure = true) protected ByteBuffer write(@NotNull ByteBuffer buffer, long position) throws IOException {
+			if (!Judge.isNull(digest)) {
+				digest.update(buffer, position);
+			}
+			if (Judge.isNull(blocks)) {
+				try {
+					while (buffer.hasRemaining()) {
+						position += channel.write(buffer, position);
+					}
+				} catch (IOException e) {
+					throw new StorageException(e);
+				}
+				return buffer;
+			}
+			synchronized (this) {
+				if (!Judge.isNull(error)) {
+					throw error;
+				}
+				pending++;
+			}
+			try {
+				for (Block block = new Block(buffer, position); !blocks.offer(block, 100, TimeUnit.MILLISECONDS); ) { // 队列满时等待,期间检查写入线程是否已异常退出
+					synchronized (this) {
+						if (!Judge.isNull(error)) {
+							pending--;
+							throw error;
+						}
+					}
+				}
+			} catch (InterruptedException e) {
+				synchronized (this) {
+					pending--;
+				}
+				throw new InterruptedIOException();
+			}
+			return buffer();
+		}
+
+		/**
+		 * 设置下载时同步计算的hash,写入位置与已计算位置连续的数据将直接参与计算
+		 *
+		 * @param digest hash计算器
+		 * @return this
+		 */
+		@Contract(pure = true) protected PieceWriter digest(@NotNull StreamDigest digest) {
+			this.digest = digest;
+			return this;
+		}
+
+		/**
+		 * 从文件中读取尚未参与计算的数据,将hash计算推进到指定位置,调用前应保证数据已写入
+		 *
+		 * @param end 结束位置
+		 * @throws IOException 如果发生 I/O 异常
+		 */
+		@Contract(pure = true) protected void digest(long end) throws IOException {
+			if (!Judge.isNull(digest) && digest.position < end) {
+				ByteBuffer buffer = buffer();
+				try {
+					digest.update(channel, end, buffer);
+				} finally {
+					release(buffer);
+				}
+			}
+		}
+
+		/**
+		 * 获取下载时计算的hash值
+		 *
+		 * @param size 文件大小
+		 * @return hash值, 未启用或未计算到文件末尾时为空
+		 */
+		@Contract(pure = true) protected Optional<String> hash(long size) {
+			return Judge.isNull(digest) || digest.position != size ? Optional.empty() : Optional.of(digest.hex());
+		}
+
+		/**
+		 * 读取文件指定范围计算hash值
+		 *
+		 * @param start 起始位置
+		 * @param end   结束位置(不包含)
+		 * @param hash  用于确定hash算法的hash值
+		 * @return hash值
+		 * @throws IOException 如果发生 I/O 异常
+		 */
+		@Contract(pure = true) protected String hash(long start, long end, @NotNull String hash) throws IOException {
+			StreamDigest digest = new StreamDigest(hash);
+			digest.position = start;
+			ByteBuffer buffer = buffer();
+			try {
+				digest.update(channel, end, buffer);
+			} finally {
+				release(buffer);
+			}
+			return digest.hex();
+		}
+
+		/**
+		 * 将已写入的数据强制刷新到存储设备
+		 *
+		 * @throws IOException 如果发生 I/O 异常
+		 */
+		@Contract(pure = true) protected void force() throws IOException {
+			channel.force(false);
+		}
+
+		/**
+		 * 等待异步写入队列中的数据全部写入磁盘
+		 *
+		 * @throws IOException 如果发生 I/O 异常
+		 */
+		@Contract(pure = true) protected synchronized void flush() throws IOException {
+			while (pending > 0 && Judge.isNull(error)) {
+				try {
+					wait();
+				} catch (InterruptedException e) {
+					throw new InterruptedIOException();
+				}
+			}
+			if (!Judge.isNull(error)) {
+				throw error;
+			}
+		}
+
+		@Override public void close() throws IOException {
+			try {
+				if (!Judge.isNull(executorService)) {
+					flush();
+				}
+			} finally {
+				if (!Judge.isNull(executorService)) {
+					executorService.shutdownNow(); // 队列已清空,中断等待中的写入线程
+					MultiThreadUtil.waitForEnd(executorService);
+					for (Block block; !Judge.isNull(block = blocks.poll()); ) { // 写入线程异常退出时归还未写入的缓冲区
+						release(block.buffer());
+					}
+				}
+				if (!Judge.isNull(file)) {
+					file.close();
+				}
+			}
+		}
+
+		/**
+		 * 异步写入的数据块
+		 */
+		protected record Block(ByteBuffer buffer, long position) {
+		}
+	}
+
+	/**
+	 * 写入本地文件失败,如磁盘空间不足或文件被占用,或者按顺序交付时消费者抛出异常,与网络异常不同,重试请求无法恢复,下载直接结束
+	 *
+	 * @author haicdust
+	 * @version 1.0
+	 * @since 2022/10/3 20:10
+	 */
+	protected static class StorageException extends IOException {
+
+		private static final long serialVersionUID = 1L;
+
+		protected final int statusCode; // 下载结束的状态码
+
+		protected StorageException(@NotNull Throwable cause) {
+			this(cause, HttpStatus.SC_STORAGE_ERROR);
+		}
+
+		protected StorageException(@NotNull Throwable cause, int statusCode) {
+			super(cause.getMessage(), cause);
+			this.statusCode = statusCode;
+		}
+
+	}
+
+	/**
+	 * 按顺序交付的下载写入器,不写入文件,在有界重排缓冲区中按位置排序后依次交付给消费者
+	 * <p>
+	 * 写入位置超出窗口时写入线程阻塞等待,写入位置恰好为交付位置的线程负责交付当前数据以及之后连续的缓冲数据,其它线程的数据放入重排缓冲区后立即返回
+	 *
+	 * @author haicdust
+	 * @version 1.0
+	 * @since 2022/9/30 20:26
+	 */
+	protected static class StreamWriter extends PieceWriter {
+		protected final Consumer<ByteBuffer> consumer;
+		protected final long window; // 重排窗口大小
+		protected final TreeMap<Long, ByteBuffer> reorder = new TreeMap<>(); // 提前到达的数据
+		protected long position; // 已交付的位置
+		protected boolean delivering; // 是否有线程正在交付
+		protected RuntimeException failure; // 消费者异常
+
+		protected StreamWriter(@NotNull Consumer<ByteBuffer> consumer, long window, int bufferSize) {
+			super(bufferSize);
+			this.consumer = consumer;
+			this.window = window;
+		}
+
+		@Contract(pure = true) protected ByteBuffer write(@NotNull ByteBuffer buffer, long position) throws IOException {
+			synchronized (this) {
+				while (position - this.position >= window && Judge.isNull(failure)) { // 超出重排窗口,等待交付
+					try {
+						wait();
+					} catch (InterruptedException e) {
+						throw new InterruptedIOException();
+					}
+				}
+				if (!Judge.isNull(failure)) {
+					throw new StorageException(failure, HttpStatus.SC_CONSUMER_ERROR);
+				} else if (position != this.position || delivering) {
+					reorder.put(position, buffer);
+					return buffer();
+				}
+				delivering = true;
+			}
+			for (ByteBuffer next = buffer; ; ) {
+				int length = next.remaining();
+				try {
+					if (!Judge.isNull(digest)) {
+						digest.update(next, this.position);
+					}
+					consumer.accept(next.asReadOnlyBuffer());
+				} catch (RuntimeException e) {
+					synchronized (this) {
+						failure = e;
+						delivering = false;
+						notifyAll();
+					}
+					throw new StorageException(e, HttpStatus.SC_CONSUMER_ERROR);
+				}
+				synchronized (this) {
+					this.position += length;
+					if (next != buffer) {
+						release(next);
+					}
+					next = reorder.remove(this.position);
+					if (Judge.isNull(next)) {
+						delivering = false;
+						notifyAll();
+						return buffer;
+					}
+				}
+			}
+		}
+
+		/**
+		 * 等待正在进行的交付结束
+		 *
+		 * @throws IOException 如果消费者抛出异常
+		 */
+		@Contract(pure = true) protected synchronized void flush() throws IOException {
+			while (delivering) {
+				try {
+					wait();
+				} catch (InterruptedException e) {
+					throw new InterruptedIOException();
+				}
+			}
+			if (!Judge.isNull(failure)) {
+				throw new StorageException(failure, HttpStatus.SC_CONSUMER_ERROR);
+			}
+		}
+
+		@Contract(pure = true) protected void force() {
+			// 没有文件
+		}
+
+		@Contract(pure = true) protected void digest(long end) {
+			// 数据按顺序交付时已同步计算
+		}
+
+		@Contract(pure = true) protected String hash(long start, long end, @NotNull String hash) throws IOException {
+			throw new IOException("Stream download can not read back data");
+		}
+
+		@Override public synchronized void close() {
+			reorder.values().forEach(this::release); // 下载失败时丢弃未交付的数据
+			reorder.clear();
+		}
+	}
+
+	/**
+	 * 自适应线程控制器,按照AIMD方式调整下载线程数上限
+	 * <p>
+	 * 每个调整周期统计总下载速度: 周期内发生错误时上限减半; 上次增加线程后总速度上升则继续增加一个线程,否则撤销增加并保持一段时间
+	 *
+	 * @author haicdust
+	 * @version 1.0
+	 * @since 2022/9/25 16:32
+	 */
+	protected static class AdaptiveController {
+		protected static final int HOLD_CYCLES = 5; // 速度不再上升后,保持线程数的周期数
+		protected static final double RISE_RATIO = 1.05; // 认为速度上升的最小比例
+
+		protected final int min;
+		protected final int max;
+		protected final AtomicInteger limit;
+		protected final AtomicInteger errors = new AtomicInteger();
+		protected long lastBytes;
+		protected long lastTime = System.nanoTime();
+		protected double lastSpeed;
+		protected boolean increased;
+		protected int hold;
+
+		protected AdaptiveController(int min, int max, long bytes) {
+			this.min = min;
+			this.max = max;
+			this.limit = new AtomicInteger(min);
+			this.lastBytes = bytes;
+		}
+
+		/**
+		 * 记录一次请求错误或限流
+		 */
+		@Contract(pure = true) protected void error() {
+			errors.incrementAndGet();
+		}
+
+		/**
+		 * 获取当前线程数上限
+		 *
+		 * @return 线程数上限
+		 */
+		@Contract(pure = true) protected int limit() {
+			return limit.get();
+		}
+
+		/**
+		 * 根据当前已下载字节数计算速度并调整线程数上限
+		 *
+		 * @param bytes 已下载字节数
+		 * @return 调整后的线程数上限
+		 */
+		@Contract(pure = true) protected synchronized int adjust(long bytes) {
+			long now = System.nanoTime();
+			double speed = (bytes - lastBytes) / Math.max((now - lastTime) / 1e9, 1e-3);
+			int current = limit.get(), next;
+			if (errors.getAndSet(0) > 0) { // 乘性减少
+				next = Math.max(min, current / 2);
+				hold = HOLD_CYCLES;
+			} else if (increased && speed < lastSpeed * RISE_RATIO) { // 增加线程后速度没有上升,撤销增加
+				next = Math.max(min, current - 1);
+				hold = HOLD_CYCLES;
+			} else if (hold > 0) {
+				next = current;
+				hold--;
+			} else { // 加性增加
+				next = Math.min(max, current + 1);
+			}
+			increased = next > current;
+			lastBytes = bytes;
+			lastTime = now;
+			lastSpeed = speed;
+			limit.set(next);
+			return next;
+		}
+	}
+
+	/**
+	 * 下载进度
+	 *
+	 * @param fileSize      文件大小,未知时为0
+	 * @param completed     已下载字节数,包含断点续传前已下载的部分
+	 * @param speed         瞬时速度,两次回调之间的平均速度(字节每秒)
+	 * @param averageSpeed  本次下载开始以来的平均速度(字节每秒)
+	 * @param eta           预计剩余时间(毫秒),未知时为-1
+	 * @param retries       重试次数
+	 * @param connectTime   所有请求建立连接并获取响应头的总耗时(毫秒)
+	 * @param firstByteTime 所有请求从获取响应头到读取首个数据块的总耗时(毫秒)
+	 * @param transferTime  所有请求读取其余数据的总耗时(毫秒)
+	 * @param writeTime     所有数据写入文件(或写入队列)的总耗时(毫秒)
+	 * @param pieces        断点位置之后的各分块状态,之前已完成的连续分块已合并,全量下载模式为空
+	 */
+	public record Progress(long fileSize, long completed, long speed, long averageSpeed, long eta, int retries, long connectTime, long firstByteTime,
+			long transferTime, long writeTime, List<PieceState> pieces) {}
+
+	/**
+	 * 分块状态
+	 *
+	 * @param start     分块起始位
+	 * @param end       分块结束位
+	 * @param completed 已下载字节数
+	 * @param done      是否完成
+	 */
+	public record PieceState(long start, long end, long completed, boolean done) {}
+
+	/**
+	 * 下载耗时统计,下载线程只累加计数,由后台线程生成下载进度
+	 *
+	 * @author haicdust
+	 * @version 1.0
+	 * @since 2022/9/29 21:17
+	 */
+	protected static class Metrics {
+		protected final AtomicInteger retries = new AtomicInteger(); // 重试次数
+		protected final AtomicLong connect = new AtomicLong(); // 建立连接耗时(纳秒)
+		protected final AtomicLong firstByte = new AtomicLong(); // 首字节耗时(纳秒)
+		protected final AtomicLong transfer = new AtomicLong(); // 传输耗时(纳秒)
+		protected final AtomicLong write = new AtomicLong(); // 写入耗时(纳秒)
+		protected long startTime; // 开始时间
+		protected long startBytes; // 开始时已下载字节数
+		protected long lastTime; // 上次回调时间
+		protected long lastBytes; // 上次回调时已下载字节数
+
+		/**
+		 * 记录开始下载
+		 *
+		 * @param completed 已下载字节数
+		 */
+		@Contract(pure = true) protected synchronized void start(long completed) {
+			startTime = lastTime = System.nanoTime();
+			startBytes = lastBytes = completed;
+		}
+
+		@Contract(pure = true) protected void connect(long nanos) {
+			connect.addAndGet(nanos);
+		}
+
+		@Contract(pure = true) protected void read(boolean first, long nanos) {
+			(first ? firstByte : transfer).addAndGet(nanos);
+		}
+
+		@Contract(pure = true) protected void write(long nanos) {
+			write.addAndGet(nanos);
+		}
+
+		/**
+		 * 生成下载进度
+		 *
+		 * @param fileSize  文件大小
+		 * @param completed 已下载字节数
+		 * @param pieces    分块状态
+		 * @return 下载进度
+		 */
+		@Contract(pure = true) protected synchronized Progress progress(long fileSize, long completed, @NotNull List<PieceState> pieces) {
+			long now = System.nanoTime();
+			long speed = now > lastTime ? (long) ((completed - lastBytes) * 1e9 / (now - lastTime)) : 0;
+			long averageSpeed = now > startTime ? (long) ((completed - startBytes) * 1e9 / (now - startTime)) : 0;
+			long rate = speed > 0 ? speed : averageSpeed;
+			long eta = fileSize > 0 && rate > 0 ? Math.max(0, fileSize - completed) * 1000 / rate : fileSize > 0 && completed >= fileSize ? 0 : -1;
+			lastTime = now;
+			lastBytes = completed;
+			return new Progress(fileSize, completed, speed, averageSpeed, eta, retries.get(), connect.get() / 1000000, firstByte.get() / 1000000,
+					transfer.get() / 1000000, write.get() / 1000000, pieces);
+		}
+	}
+
+	/**
+	 * 分块下载源,记录请求速度和连续失败次数
+	 *
+	 * @author haicdust
+	 * @version 1.0
+	 * @since 2022/9/28 19:42
+	 */
+	protected static class Source {
+		protected final String url;
+		protected final RateLimiter limiter; // 域名限速器
+		protected final AtomicInteger inflight = new AtomicInteger(); // 正在进行的请求数
+		protected final AtomicInteger failures = new AtomicInteger(); // 连续失败次数
+		protected final AtomicLong bytes = new AtomicLong(); // 已下载字节数
+		protected final AtomicLong nanos = new AtomicLong(); // 请求耗时
+		protected volatile boolean dead; // 已弃用
+
+		protected Source(@NotNull String url) {
+			this.url = url;
+			this.limiter = RateLimiter.host(URIUtils.getDomain(url));
+		}
+
 		/**
-		 * 全量下载，下载获取文件信息并写入文件
+		 * 记录下载量和耗时,有数据写入时重置连续失败次数
 		 *
-		 * @param response 网页Response对象
-		 * @param retry    重试次数
-		 * @return 下载并写入是否成功(状态码)
+		 * @param bytes 下载字节数
+		 * @param nanos 耗时(纳秒)
 		 */
-		@Contract(pure = true) protected int FULL(org.haic.often.Network.Response response, int retry) {
-			try (InputStream in = response.bodyStream(); RandomAccessFile out = new RandomAccessFile(storage, "rw")) {
-				out.seek(MAX_COMPLETED);
-				byte[] buffer = new byte[DEFAULT_BUFFER_SIZE];
-				for (int len; (len = in.read(buffer, 0, DEFAULT_BUFFER_SIZE)) > -1; MAX_COMPLETED = schedule.addAndGet(len)) {
-					out.write(buffer, 0, len);
-				}
-				if (fileSize == 0 || fileSize == MAX_COMPLETED) {
-					return HttpStatus.SC_OK;
+		@Contract(pure = true) protected void record(long bytes, long nanos) {
+			this.bytes.addAndGet(bytes);
+			this.nanos.addAndGet(nanos);
+			if (bytes > 0) {
+				failures.set(0);
+			}
+		}
+
+		/**
+		 * 获取单个连接的平均速度,未测速时为最大值
+		 *
+		 * @return 字节每秒
+		 */
+		@Contract(pure = true) protected double speed() {
+			long time = nanos.get();
+			return time == 0 ? Double.MAX_VALUE : bytes.get() * 1e9 / time;
+		}
+	}
+
+	/**
+	 * 下载时同步计算文件hash,按文件顺序推进计算位置
+	 * <p>
+	 * 写入位置恰好位于计算位置的数据直接参与计算,其余数据在所在分块完成后从文件读取补算,下载完成时无需重新读取整个文件
+	 *
+	 * @author haicdust
+	 * @version 1.0
+	 * @since 2022/9/23 20:48
+	 */
+	protected static class StreamDigest {
+		protected final MessageDigest digest;
+		protected volatile long position; // 已计算的位置
+		protected String hex; // 计算完成的hash值
+
+		protected StreamDigest(@NotNull String hash) {
+			try {
+				digest = MessageDigest.getInstance(algorithm(hash));
+			} catch (NoSuchAlgorithmException e) {
+				throw new RuntimeException(e);
+			}
+		}
+
+		/**
+		 * 根据所给hash位数,获取相应的hash算法
+		 *
+		 * @param hash hash值
+		 * @return hash算法, 位数不正确时返回null
+		 */
+		@Contract(pure = true) protected static String algorithm(@NotNull String hash) {
+			return switch (hash.length()) {
+				case 32 -> "MD5";
+				case 40 -> "SHA-1";
+				case 64 -> "SHA-256";
+				case 96 -> "SHA-384";
+				case 128 -> "SHA-512";
+				default -> null;
+			};
+		}
+
+		/**
+		 * 如果数据与已计算位置连续,则参与计算
+		 *
+		 * @param buffer   缓冲区,不改变其位置
+		 * @param position 数据在文件中的位置
+		 */
+		@Contract(pure = true) protected void update(@NotNull ByteBuffer buffer, long position) {
+			long end = position + buffer.remaining();
+			if (position > this.position || end <= this.position) { // 不连续,等待补算
+				return;
+			}
+			synchronized (this) {
+				if (position <= this.position && this.position < end) {
+					digest.update(buffer.duplicate().position(buffer.position() + (int) (this.position - position)));
+					this.position = end;
 				}
-			} catch (IOException e) {
-				if (unlimit || retry > 0) {
-					MultiThreadUtil.waitForThread(MILLISECONDS_SLEEP);
-					return FULL(retry - 1);
+			}
+		}
+
+		/**
+		 * 从文件读取数据,将计算位置推进到指定位置
+		 *
+		 * @param channel 文件通道
+		 * @param end     结束位置
+		 * @param buffer  读取缓冲区
+		 * @throws IOException 如果发生 I/O 异常
+		 */
+		@Contract(pure = true) protected synchronized void update(@NotNull FileChannel channel, long end, @NotNull ByteBuffer buffer) throws IOException {
+			while (position < end) {
+				int len = channel.read(buffer.clear().limit((int) Math.min(buffer.capacity(), end - position)), position);
+				if (len < 0) {
+					throw new EOFException();
 				}
+				digest.update(buffer.flip());
+				position += len;
 			}
-			return HttpStatus.SC_REQUEST_TIMEOUT;
 		}
 
-		@Contract(pure = true) protected int MULTITHREAD(int PIECE_COUNT, long PIECE_SIZE) {
-			AtomicInteger statusCodes = new AtomicInteger(HttpStatus.SC_OK);
-			AtomicBoolean addCompleted = new AtomicBoolean(true);
-			executorService = Executors.newFixedThreadPool(MAX_THREADS); // 限制多线程;
-			for (long i = MAX_COMPLETED / PIECE_SIZE; i < PIECE_COUNT; i++) {//PIECE_COUNT
-				executorService.execute(new ParameterizedThread<>(i, (index) -> { // 执行多线程程
-					long start = index * PIECE_SIZE;
-					long end = (index + 1 == PIECE_COUNT ? fileSize : (index + 1) * PIECE_SIZE) - 1;
-					long flip = status.getOrDefault(start, start);
-					schedule.addAndGet(flip - start);
-					int statusCode = flip == end ? HttpStatus.SC_PARTIAL_CONTENT : writePiece(start, flip, end, retry);
-					if (addCompleted.get() && end > MAX_COMPLETED) {
-						addCompleted.set(false);
-						long completed;
-						while ((completed = status.getOrDefault(MAX_COMPLETED, MAX_COMPLETED)) == MAX_COMPLETED + PIECE_SIZE) {
-							status.remove(MAX_COMPLETED);
-							MAX_COMPLETED = completed;
-						}
-						addCompleted.set(true);
-					}
-					if (!URIUtils.statusIsOK(statusCode)) {
-						statusCodes.set(statusCode);
-						executorService.shutdownNow(); // 结束未开始的线程，并关闭线程池
+		@Contract(pure = true) protected synchronized String hex() {
+			return Judge.isNull(hex) ? (hex = HexFormat.of().formatHex(digest.digest())) : hex;
+		}
+	}
+
+	/**
+	 * 断点续传日志,以追加方式写入二进制记录,程序崩溃或断电时最多丢失一个写入间隔内的进度
+	 * <p>
+	 * 每条记录包含已完成的连续位置以及未完成分块的起始位和写入位置,并以CRC32效验,回放时使用最后一条完整的记录
+	 * <p>
+	 * 日志超过大小上限时,写入临时文件后替换原日志进行压缩
+	 *
+	 * @author haicdust
+	 * @version 1.0
+	 * @since 2022/9/21 22:05
+	 */
+	protected static class Journal implements Closeable {
+		protected static final int MAGIC = 0x48434A4C; // 记录标识
+		protected static final long MAX_SIZE = 1048576; // 日志大小上限
+		protected final File file;
+		protected FileChannel channel;
+
+		protected Journal(@NotNull File file) throws IOException {
+			this.file = file;
+			this.channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+		}
+
+		/**
+		 * 追加一条记录并刷新到存储设备
+		 *
+		 * @param completed 已完成的连续位置
+		 * @param status    未完成分块的起始位和写入位置
+		 * @throws IOException 如果发生 I/O 异常
+		 */
+		@Contract(pure = true) protected synchronized void append(long completed, @NotNull Map<Long, Long> status) throws IOException {
+			ByteBuffer record = encode(completed, status);
+			if (channel.size() + record.remaining() > MAX_SIZE) { // 压缩日志
+				File temp = new File(file + ".tmp");
+				try (FileChannel output = FileChannel.open(temp.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+					while (record.hasRemaining()) {
+						output.write(record);
 					}
-				}));
+					output.force(false);
+				}
+				channel.close();
+				Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+				channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+				return;
 			}
-			MultiThreadUtil.waitForEnd(executorService); // 等待线程结束
-			return statusCodes.get();
+			while (record.hasRemaining()) {
+				channel.write(record);
+			}
+			channel.force(false);
 		}
 
 		/**
-		 * 分块下载，下载获取文件区块信息并写入文件
+		 * 编码记录: 标识(int) 已完成位置(long) 分块数量(int) [起始位(long) 写入位置(long)]... CRC32(long)
 		 *
-		 * @param start 块起始位
-		 * @param flip  断点位置,用于修正
-		 * @param end   块结束位
-		 * @param retry 重试次数
-		 * @return 下载并写入是否成功(状态码)
+		 * @param completed 已完成的连续位置
+		 * @param status    未完成分块的起始位和写入位置
+		 * @return 记录
 		 */
-		@Contract(pure = true) protected int writePiece(long start, long flip, long end, int retry) {
-			org.haic.often.Network.Response piece = HttpsUtil.connect(url).proxy(proxy).headers(headers).header("range", "bytes=" + flip + "-" + end)
-					.cookies(cookies).execute();
-			return URIUtils.statusIsOK(piece.statusCode()) ?
-					writePiece(start, flip, end, piece, retry) :
-					unlimit || retry > 0 ? writePiece(start, flip, end, retry - 1) : piece.statusCode();
+		@Contract(pure = true) protected static ByteBuffer encode(long completed, @NotNull Map<Long, Long> status) {
+			ByteBuffer record = ByteBuffer.allocate(24 + status.size() * 16);
+			record.putInt(MAGIC).putLong(completed).putInt(status.size());
+			status.forEach((start, flip) -> record.putLong(start).putLong(flip));
+			CRC32 crc = new CRC32();
+			crc.update(record.array(), 0, record.position());
+			return record.putLong(crc.getValue()).flip();
 		}
 
 		/**
-		 * 下载获取文件区块信息并写入文件
+		 * 回放日志,获取最后一条完整记录
 		 *
-		 * @param start 块起始位
-		 * @param flip  断点位置,用于修正
-		 * @param end   块结束位
-		 * @param piece 块Response对象
-		 * @param retry 重试次数
-		 * @return 下载并写入是否成功(状态码)
+		 * @param file   日志文件
+		 * @param status 用于存放未完成分块的起始位和写入位置
+		 * @return 已完成的连续位置, 日志不存在或没有完整记录时返回-1
 		 */
-		@Contract(pure = true) protected int writePiece(long start, long flip, long end, org.haic.often.Network.Response piece, int retry) {
-			long count = 0;
-			try (InputStream inputStream = piece.bodyStream(); RandomAccessFile output = new RandomAccessFile(storage, "rw")) {
-				output.seek(flip);
-				byte[] buffer = new byte[DEFAULT_BUFFER_SIZE];
-				for (int len; !Judge.isMinusOne(len = inputStream.read(buffer)); count += len, status.put(start, flip + count), schedule.addAndGet(len)) {
-					output.write(buffer, 0, len);
+		@Contract(pure = true) protected static long replay(@NotNull File file, @NotNull Map<Long, Long> status) {
+			if (!file.isFile()) {
+				return -1;
+			}
+			ByteBuffer journal;
+			try {
+				journal = ByteBuffer.wrap(Files.readAllBytes(file.toPath()));
+			} catch (IOException e) {
+				return -1;
+			}
+			long completed = -1;
+			Map<Long, Long> last = new HashMap<>();
+			while (journal.remaining() >= 24) {
+				int begin = journal.position();
+				if (journal.getInt() != MAGIC) {
+					break;
 				}
-				if (end - flip + 1 == count) {
-					return HttpStatus.SC_PARTIAL_CONTENT;
+				long position = journal.getLong();
+				int count = journal.getInt();
+				if (count < 0 || journal.remaining() < count * 16L + 8) { // 记录未写入完整
+					break;
 				}
-			} catch (IOException e) {
-				if (unlimit || retry > 0) {
-					MultiThreadUtil.waitForThread(MILLISECONDS_SLEEP);
-					return writePiece(start, flip + count, end, retry - 1);
+				Map<Long, Long> record = new HashMap<>();
+				for (int i = 0; i < count; i++) {
+					record.put(journal.getLong(), journal.getLong());
 				}
+				CRC32 crc = new CRC32();
+				crc.update(journal.array(), begin, journal.position() - begin);
+				if (journal.getLong() != crc.getValue()) {
+					break;
+				}
+				completed = position;
+				last = record;
 			}
-			return HttpStatus.SC_REQUEST_TIMEOUT;
+			status.putAll(last);
+			return completed;
+		}
+
+		@Override public void close() throws IOException {
+			channel.close();
+		}
+	}
+
+	/**
+	 * 下载分块,记录分块的起始位,结束位和写入位置
+	 * <p>
+	 * 结束位可被拆分缩小,写入前需通过 {@link #reserve(int)} 预留写入位置,保证拆分点始终位于已预留位置之后
+	 *
+	 * @author haicdust
+	 * @version 1.0
+	 * @since 2022/9/18 20:16
+	 */
+	protected static class Piece {
+		protected final long start; // 块起始位
+		protected volatile long end; // 块结束位
+		protected volatile long flip; // 已写入位置
+		protected long reserved; // 已预留写入位置
+
+		protected Piece(long start, long end) {
+			this.start = start;
+			this.end = end;
+			this.flip = this.reserved = start;
+		}
+
+		/**
+		 * 预留写入位置,写入长度不超过当前结束位
+		 *
+		 * @param len 读取的长度, -1为流结束
+		 * @return 可写入的长度
+		 */
+		@Contract(pure = true) protected synchronized int reserve(int len) {
+			len = (int) Math.min(len, end + 1 - flip);
+			reserved = flip + Math.max(len, 0);
+			return len;
+		}
+
+		/**
+		 * 拆分当前分块,当前分块保留前半部分,返回后半部分
+		 *
+		 * @param minSize 拆分后分块的最小大小
+		 * @return 后半部分分块, 剩余大小不足时返回null
+		 */
+		@Contract(pure = true) protected synchronized Piece split(long minSize) {
+			long remaining = remaining();
+			if (remaining < minSize * 2) {
+				return null;
+			}
+			Piece piece = new Piece(end + 1 - remaining / 2, end);
+			end = piece.start - 1;
+			return piece;
+		}
+
+		@Contract(pure = true) protected synchronized long remaining() {
+			return end + 1 - Math.max(flip, reserved);
 		}
 
+		@Contract(pure = true) protected boolean isDone() {
+			return flip > end;
+		}
 	}
 
 	/**
@@ -820,6 +2998,26 @@ public class NetworkUtil {
 		 */
 		@Contract(pure = true) public abstract Connection alterUrl(@NotNull String url);
 
+		/**
+		 * 设置同一文件的镜像URL,如不同的CDN节点或网盘直链,分块多线程下载时各分块按照下载源的速度比例分配到URL和镜像URL
+		 * <p>
+		 * 连续请求失败的下载源会被弃用,其分块交由其它下载源下载,文件信息仍然通过主URL获取,全量下载模式只使用主URL
+		 *
+		 * @param urls 镜像URL
+		 * @return 此连接，用于链接
+		 */
+		@Contract(pure = true) public abstract Connection mirrors(@NotNull String... urls);
+
+		/**
+		 * 设置同一文件的镜像URL,如不同的CDN节点或网盘直链,分块多线程下载时各分块按照下载源的速度比例分配到URL和镜像URL
+		 * <p>
+		 * 连续请求失败的下载源会被弃用,其分块交由其它下载源下载,文件信息仍然通过主URL获取,全量下载模式只使用主URL
+		 *
+		 * @param urls 镜像URL列表
+		 * @return 此连接，用于链接
+		 */
+		@Contract(pure = true) public abstract Connection mirrors(@NotNull List<String> urls);
+
 		/**
 		 * 连接用户代理（ 字符串 用户代理）<br/> 设置请求用户代理标头
 		 *
@@ -886,6 +3084,58 @@ public class NetworkUtil {
 		 */
 		@Contract(pure = true) public abstract Connection multithread(int nThread);
 
+		/**
+		 * 设置自适应多线程下载,根据下载速度动态调整线程数
+		 * <p>
+		 * 从最小线程数开始,总速度持续上升时逐个增加线程,总速度不再上升时撤销增加,出现请求错误或限流(如429,503)时线程数减半
+		 *
+		 * @param minThread 最小线程数,不小于1
+		 * @param maxThread 最大线程数,不小于最小线程数
+		 * @return 此连接，用于链接
+		 */
+		@Contract(pure = true) public abstract Connection multithread(int minThread, int maxThread);
+
+		/**
+		 * 设置是否使用虚拟线程下载分块,每个下载线程使用一个虚拟线程,下载线程数仍由线程数设置限制
+		 * <p>
+		 * 运行环境不支持虚拟线程时(JDK 21以下且未启用预览特性),使用固定线程数的守护线程池
+		 *
+		 * @param enable 启用虚拟线程
+		 * @return 此连接，用于链接
+		 */
+		@Contract(pure = true) public abstract Connection virtualThread(boolean enable);
+
+		/**
+		 * 设置是否使用HTTP/2下载分块,分块请求通过共享的 {@link java.net.http.HttpClient} 在少量连接上多路复用,避免每个分块和每次重试都重新建立TCP和TLS连接
+		 * <p>
+		 * 服务器不支持HTTP/2时使用HTTP/1.1长连接; 文件信息请求和全量下载模式仍然使用 {@link HttpsUtil}; 使用SOCKS代理时此设置无效
+		 *
+		 * @param enable 启用HTTP/2
+		 * @return 此连接，用于链接
+		 */
+		@Contract(pure = true) public abstract Connection http2(boolean enable);
+
+		/**
+		 * 设置下载进度监听器,下载过程中每秒在后台线程中回调一次,下载结束时回调最终进度
+		 * <p>
+		 * 下载线程只累加计数,不会调用监听器,监听器不应长时间阻塞
+		 *
+		 * @param listener 下载进度监听器
+		 * @return 此连接，用于链接
+		 */
+		@Contract(pure = true) public abstract Connection progress(@NotNull Consumer<Progress> listener);
+
+		/**
+		 * 设置下载进度监听器,下载过程中按照指定间隔在后台线程中回调,下载结束时回调最终进度
+		 * <p>
+		 * 下载线程只累加计数,不会调用监听器,监听器不应长时间阻塞
+		 *
+		 * @param listener 下载进度监听器
+		 * @param millis   回调间隔(毫秒)
+		 * @return 此连接，用于链接
+		 */
+		@Contract(pure = true) public abstract Connection progress(@NotNull Consumer<Progress> listener, int millis);
+
 		/**
 		 * 设置文件大小, 请保证大小正确, 仅在多线程模式并且无法通过请求头获取文件大小时使用
 		 *
@@ -1004,6 +3254,16 @@ public class NetworkUtil {
 		 */
 		@Contract(pure = true) public abstract Connection bufferSize(int bufferSize);
 
+		/**
+		 * 设置限速器,上传和下载时消耗令牌,同一个限速器可以被多个连接共享
+		 * <p>
+		 * 无论是否设置,都会同时受到 {@link RateLimiter#host(String)} 和 {@link RateLimiter#global()} 的限制
+		 *
+		 * @param limiter 限速器
+		 * @return 此连接，用于链接
+		 */
+		@Contract(pure = true) public abstract Connection rateLimit(@NotNull RateLimiter limiter);
+
 		/**
 		 * 设置md5效验值进行文件完整性效验<br/> 如果效验不正确会在下载完成后删除文件并重置配置文件<br/> 抛出异常信息
 		 *
@@ -1020,6 +3280,17 @@ public class NetworkUtil {
 		 */
 		@Contract(pure = true) public abstract Connection valid(boolean valid);
 
+		/**
+		 * 设置分块hash值,例如Metalink中的pieces或网盘接口返回的分块hash,hash算法由hash位数确定,支持MD5,SHA-1,SHA-256,SHA-384,SHA-512的十六进制hash值
+		 * <p>
+		 * 下载完成后文件hash不存在或效验不正确时,逐块效验并仅重新下载效验失败的分块,而不是删除整个文件重新下载
+		 *
+		 * @param length 每个分块的大小(字节),最后一个分块可以小于该值
+		 * @param hashes 按顺序排列的分块hash值
+		 * @return 此连接，用于链接
+		 */
+		@Contract(pure = true) public abstract Connection pieceHash(long length, @NotNull List<String> hashes);
+
 		/**
 		 * 设置在多线程模式下载时,分块最大大小
 		 *
@@ -1028,6 +3299,75 @@ public class NetworkUtil {
 		 */
 		@Contract(pure = true) public abstract Connection pieceSize(long kb);
 
+		/**
+		 * 设置断点续传日志的写入间隔,日志记录已完成的分块和写入位置,程序崩溃或断电后可从日志恢复下载进度
+		 *
+		 * @param millis 写入间隔(毫秒),0为仅在退出时写入,默认1000
+		 * @return 此连接，用于链接
+		 */
+		@Contract(pure = true) public abstract Connection journal(int millis);
+
+		/**
+		 * 启用异步写入,网络读取线程只负责填充缓冲区,由独立的写入线程合并相邻数据后写入磁盘
+		 * <p>
+		 * 适用于机械硬盘或网络文件系统,避免磁盘延迟拖慢网络读取,队列满时读取线程等待
+		 *
+		 * @param nThread 写入线程数,0为关闭,默认关闭
+		 * @return 此连接，用于链接
+		 */
+		@Contract(pure = true) public abstract Connection writeBehind(int nThread);
+
+		/**
+		 * 启用异步写入,网络读取线程只负责填充缓冲区,由独立的写入线程合并相邻数据后写入磁盘
+		 *
+		 * @param nThread   写入线程数,0为关闭,默认关闭
+		 * @param queueSize 写入队列容量(缓冲区数量),默认256
+		 * @return 此连接，用于链接
+		 */
+		@Contract(pure = true) public abstract Connection writeBehind(int nThread, int queueSize);
+
+		/**
+		 * 启用分块上传,按顺序上传分块,读取文件时同步计算md5,不再预先读取整个文件
+		 * <p>
+		 * 每个分块单独POST并附带 content-range 请求头,已上传的分块记录在文件同目录的 .upload 日志中,上传中断后再次上传同一文件时从未完成的分块继续
+		 *
+		 * @param kb 分块大小(KB),0为关闭,默认关闭
+		 * @return 此连接，用于链接
+		 */
+		@Contract(pure = true) public abstract Connection uploadChunk(long kb);
+
+		/**
+		 * 设置按hash寻址的本地下载缓存,下载前如果缓存中存在相同hash的文件,通过硬链接或复制得到文件,不再访问网络
+		 * <p>
+		 * hash来自 {@link #hash(String)} 或服务器响应头,通过 {@link #hash(String)} 和 {@link #fileName(String)} 同时指定时无需发送请求; 下载完成并效验通过的文件自动加入缓存
+		 *
+		 * @param store 本地下载缓存
+		 * @return 此连接，用于链接
+		 */
+		@Contract(pure = true) public abstract Connection store(@NotNull ContentStore store);
+
+		/**
+		 * 启用差异下载,在本地旧版本文件中查找与清单相同的块直接复制,只通过范围请求下载改变的块
+		 * <p>
+		 * 仅在新建下载且文件大小与清单一致时生效,未设置分块hash时使用清单中的块hash效验组装后的文件,效验失败的块重新下载
+		 *
+		 * @param seed     本地旧版本文件
+		 * @param manifest 新版本文件的分块校验清单
+		 * @return 此连接，用于链接
+		 */
+		@Contract(pure = true) public abstract Connection delta(@NotNull File seed, @NotNull BlockManifest manifest);
+
+		/**
+		 * 启用分块上传,多个分块并行上传,适用于支持按 content-range 位置写入分块的服务器
+		 * <p>
+		 * 最后一个分块在其它分块全部上传成功后发送,服务器可以在收到最后一个分块时合并文件
+		 *
+		 * @param kb      分块大小(KB),0为关闭,默认关闭
+		 * @param nThread 上传线程数,默认1
+		 * @return 此连接，用于链接
+		 */
+		@Contract(pure = true) public abstract Connection uploadChunk(long kb, int nThread);
+
 		/**
 		 * 上传网络文件,返回状态码
 		 *
@@ -1044,6 +3384,31 @@ public class NetworkUtil {
 		 */
 		@Contract(pure = true) public abstract Response upload(@NotNull File file);
 
+		/**
+		 * 异步上传网络文件,不阻塞调用线程,默认在虚拟线程中执行,运行环境不支持虚拟线程时使用普通线程
+		 *
+		 * @param filePath 待上传的文件路径
+		 * @return CompletableFuture对象,取消时停止所有连接
+		 */
+		@Contract(pure = true) public abstract CompletableFuture<Response> uploadAsync(@NotNull String filePath);
+
+		/**
+		 * 异步上传网络文件,不阻塞调用线程,默认在虚拟线程中执行,运行环境不支持虚拟线程时使用普通线程
+		 *
+		 * @param file 待上传的文件对象
+		 * @return CompletableFuture对象,取消时停止所有连接
+		 */
+		@Contract(pure = true) public abstract CompletableFuture<Response> uploadAsync(@NotNull File file);
+
+		/**
+		 * 异步上传网络文件,在指定的线程池中执行
+		 *
+		 * @param file     待上传的文件对象
+		 * @param executor 线程池
+		 * @return CompletableFuture对象,取消时停止所有连接
+		 */
+		@Contract(pure = true) public abstract CompletableFuture<Response> uploadAsync(@NotNull File file, @NotNull Executor executor);
+
 		/**
 		 * 下载网络文件,返回状态码
 		 * <p>
@@ -1063,12 +3428,72 @@ public class NetworkUtil {
 
 		/**
 		 * 下载网络文件,返回状态码
+		 * <p>
+		 * 同一JVM内URL和存放路径相同的下载同时只进行一次,之后的调用等待正在进行的下载完成并共享其结果,不会重复连接或争用会话文件; 正在进行的下载被停止时,等待的调用重新下载
 		 *
 		 * @param folder 文件存放目录对象
 		 * @return 下载状态码
 		 */
 		@Contract(pure = true) public abstract Response download(File folder);
 
+		/**
+		 * 下载网络文件并按顺序写入输出流,不写入本地文件,写入完成后刷新但不关闭输出流
+		 * <p>
+		 * 分块仍然多线程并行下载,提前到达的数据在有界重排缓冲区中等待,缓冲区满时对应的下载线程阻塞,缓冲数据不超过 2 * 线程数 * pieceSize
+		 * <p>
+		 * 不支持断点续传,文件大小未知时使用全量下载
+		 *
+		 * @param output 输出流
+		 * @return 下载状态码
+		 */
+		@Contract(pure = true) public abstract Response download(@NotNull OutputStream output);
+
+		/**
+		 * 下载网络文件并按顺序交付给消费者,不写入本地文件,可用于边下载边解压,计算hash或解析
+		 * <p>
+		 * 分块仍然多线程并行下载,提前到达的数据在有界重排缓冲区中等待,缓冲区满时对应的下载线程阻塞,缓冲数据不超过 2 * 线程数 * pieceSize
+		 * <p>
+		 * 消费者在单个线程中被依次调用,缓冲区只读且仅在调用期间有效,抛出异常时下载立即结束且不重试,状态码为 {@link HttpStatus#SC_CONSUMER_ERROR}
+		 * <p>
+		 * 不支持断点续传,文件大小未知时使用全量下载,设置或获取到hash时,无论文件大小是否已知,都会效验交付数据的完整性
+		 *
+		 * @param consumer 数据消费者
+		 * @return 下载状态码
+		 */
+		@Contract(pure = true) public abstract Response download(@NotNull Consumer<ByteBuffer> consumer);
+
+		/**
+		 * 异步下载网络文件,不阻塞调用线程,默认在虚拟线程中执行,运行环境不支持虚拟线程时使用普通线程<br/> 取消时下载的断点续传信息会被保留<br/> 自动寻找并存放下载文件夹路径
+		 *
+		 * @return CompletableFuture对象,取消时停止所有连接
+		 */
+		@Contract(pure = true) public abstract CompletableFuture<Response> downloadAsync();
+
+		/**
+		 * 异步下载网络文件,不阻塞调用线程,默认在虚拟线程中执行,运行环境不支持虚拟线程时使用普通线程<br/> 取消时下载的断点续传信息会被保留
+		 *
+		 * @param folderPath 文件存放目录路径
+		 * @return CompletableFuture对象,取消时停止所有连接
+		 */
+		@Contract(pure = true) public abstract CompletableFuture<Response> downloadAsync(@NotNull String folderPath);
+
+		/**
+		 * 异步下载网络文件,不阻塞调用线程,默认在虚拟线程中执行,运行环境不支持虚拟线程时使用普通线程<br/> 取消时下载的断点续传信息会被保留
+		 *
+		 * @param folder 文件存放目录对象
+		 * @return CompletableFuture对象,取消时停止所有连接
+		 */
+		@Contract(pure = true) public abstract CompletableFuture<Response> downloadAsync(@NotNull File folder);
+
+		/**
+		 * 异步下载网络文件,在指定的线程池中执行<br/> 取消时下载的断点续传信息会被保留
+		 *
+		 * @param folder   文件存放目录对象
+		 * @param executor 线程池
+		 * @return CompletableFuture对象,取消时停止所有连接
+		 */
+		@Contract(pure = true) public abstract CompletableFuture<Response> downloadAsync(@NotNull File folder, @NotNull Executor executor);
+
 	}
 
 	private static class Request {
@@ -0,0 +1,178 @@
+package org.haic.often.Network;
+
+import org.haic.often.Judge;
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 令牌桶限速器,用于限制上传和下载带宽
+ * <p>
+ * 令牌按照时间差一次性补充,桶容量即为允许的突发字节数,令牌不足时允许透支,透支超过10毫秒的量时由透支的线程休眠等待,避免每次读取都休眠
+ * <p>
+ * 全局限速器和域名限速器在整个JVM内共享,默认不限速,域名限速器的上级为全局限速器
+ * <p>
+ * 未设置限速的域名限速器没有状态,空闲超过10分钟后被移除,避免访问过的域名一直占用内存,设置了限速的域名限速器不会被移除
+ *
+ * @author haicdust
+ * @version 1.0
+ * @since 2022/9/26 21:14
+ */
+public class RateLimiter {
+
+	protected static final RateLimiter GLOBAL = new RateLimiter(0, null); // 全局限速器
+	protected static final Map<String, RateLimiter> HOSTS = new ConcurrentHashMap<>(); // 域名限速器
+	protected static final long MIN_WAIT = 10_000_000; // 透支不足10毫秒时不休眠,累积到下次消耗时一并等待
+	protected static final long IDLE_TIMEOUT = TimeUnit.MINUTES.toNanos(10); // 未设置限速的域名限速器空闲超过此时间后移除
+	protected static volatile long lastSweep = System.nanoTime(); // 上次清理空闲域名限速器的时间
+
+	protected final RateLimiter parent; // 上级限速器
+	protected volatile long rate; // 每秒字节数,0为不限速
+	protected long burst; // 桶容量
+	protected double tokens; // 当前令牌数,可为负数
+	protected long lastTime = System.nanoTime(); // 上次补充令牌的时间
+	protected volatile long lastUsed = System.nanoTime(); // 上次获取或消耗令牌的时间
+
+	protected RateLimiter(long rate, RateLimiter parent) {
+		this.parent = parent;
+		rate(rate);
+	}
+
+	/**
+	 * 创建一个独立的限速器,可以被多个连接共享
+	 *
+	 * @param bytesPerSecond 每秒字节数,0为不限速
+	 * @return 新的限速器
+	 */
+	@Contract(pure = true) public static RateLimiter create(long bytesPerSecond) {
+		return new RateLimiter(bytesPerSecond, null);
+	}
+
+	/**
+	 * 获取JVM全局限速器,所有NetworkUtil连接的上传和下载都会经过此限速器
+	 *
+	 * @return 全局限速器
+	 */
+	@Contract(pure = true) public static RateLimiter global() {
+		return GLOBAL;
+	}
+
+	/**
+	 * 获取指定域名的共享限速器,所有访问该域名的NetworkUtil连接都会经过此限速器
+	 *
+	 * @param host 域名
+	 * @return 域名限速器
+	 */
+	@Contract(pure = true) public static RateLimiter host(@NotNull String host) {
+		long now = System.nanoTime();
+		if (now - lastSweep > IDLE_TIMEOUT) {
+			lastSweep = now;
+			for (String key : HOSTS.keySet()) { // 在映射内判断并移除,不会移除刚被获取的限速器
+				HOSTS.computeIfPresent(key, (k, limiter) -> limiter.rate == 0 && now - limiter.lastUsed > IDLE_TIMEOUT ? null : limiter);
+			}
+		}
+		return HOSTS.compute(host.toLowerCase(), (k, limiter) -> {
+			limiter = Judge.isNull(limiter) ? new RateLimiter(0, GLOBAL) : limiter;
+			limiter.lastUsed = now;
+			return limiter;
+		});
+	}
+
+	/**
+	 * 设置限速,桶容量同时重置为一秒的字节数
+	 *
+	 * @param bytesPerSecond 每秒字节数,0为不限速
+	 * @return 此限速器
+	 */
+	@Contract(pure = true) public synchronized RateLimiter rate(long bytesPerSecond) {
+		if (bytesPerSecond < 0) {
+			throw new RuntimeException("rate Less than 0");
+		}
+		this.rate = bytesPerSecond;
+		this.tokens = this.burst = bytesPerSecond;
+		this.lastTime = System.nanoTime();
+		return this;
+	}
+
+	/**
+	 * 设置桶容量,即空闲后允许的突发字节数
+	 *
+	 * @param bytes 字节数
+	 * @return 此限速器
+	 */
+	@Contract(pure = true) public synchronized RateLimiter burst(long bytes) {
+		if (bytes < 1) {
+			throw new RuntimeException("burst Less than 1");
+		}
+		this.tokens = Math.min(tokens, this.burst = bytes);
+		return this;
+	}
+
+	/**
+	 * 获取限速
+	 *
+	 * @return 每秒字节数,0为不限速
+	 */
+	@Contract(pure = true) public long rate() {
+		return rate;
+	}
+
+	/**
+	 * 消耗令牌,令牌不足时休眠至透支部分补充完成,然后继续消耗上级限速器的令牌
+	 *
+	 * @param bytes 字节数
+	 */
+	@Contract(pure = true) public void acquire(long bytes) {
+		lastUsed = System.nanoTime();
+		if (bytes > 0 && rate > 0) {
+			long wait;
+			synchronized (this) {
+				long now = System.nanoTime();
+				tokens = Math.min(burst, tokens + (now - lastTime) * rate / 1e9) - bytes;
+				lastTime = now;
+				wait = tokens < 0 ? (long) (-tokens * 1e9 / rate) : 0;
+			}
+			if (wait >= MIN_WAIT) {
+				try {
+					TimeUnit.NANOSECONDS.sleep(wait);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		}
+		if (!Judge.isNull(parent)) {
+			parent.acquire(bytes);
+		}
+	}
+
+	/**
+	 * 获取限速的输入流,读取时消耗令牌
+	 *
+	 * @param in 输入流
+	 * @return 限速的输入流
+	 */
+	@Contract(pure = true) public InputStream wrap(@NotNull InputStream in) {
+		return new FilterInputStream(in) {
+			@Override public int read() throws IOException {
+				int b = super.read();
+				if (b > -1) {
+					acquire(1);
+				}
+				return b;
+			}
+
+			@Override public int read(byte[] b, int off, int len) throws IOException {
+				int count = super.read(b, off, len);
+				acquire(count);
+				return count;
+			}
+		};
+	}
+
+}
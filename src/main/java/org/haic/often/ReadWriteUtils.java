@@ -314,8 +314,9 @@ public class ReadWriteUtils {
 		if (!Judge.isNull(parent)) {
 			FilesUtils.createFolder(parent);
 		}
+		ByteBuffer pooled = BufferPool.heap(DEFAULT_BUFFER_SIZE);
 		try (RandomAccessFile input = new RandomAccessFile(source, "r"); RandomAccessFile output = new RandomAccessFile(out, "rw")) {
-			byte[] buffer = new byte[DEFAULT_BUFFER_SIZE];
+			byte[] buffer = pooled.array();
 			int length;
 			while (!Judge.isMinusOne(length = input.read(buffer))) {
 				output.write(buffer, 0, length);
@@ -323,6 +324,8 @@ public class ReadWriteUtils {
 			return true;
 		} catch (IOException e) {
 			e.printStackTrace();
+		} finally {
+			BufferPool.release(pooled);
 		}
 		return false;
 	}
@@ -466,8 +469,9 @@ public class ReadWriteUtils {
 	 */
 	@Contract(pure = true) public String randomRead() {
 		ByteArrayOutputStream result = new ByteArrayOutputStream();
+		ByteBuffer pooled = BufferPool.heap(DEFAULT_BUFFER_SIZE);
 		try (RandomAccessFile randomAccess = new RandomAccessFile(source, "r")) {
-			byte[] buffer = new byte[DEFAULT_BUFFER_SIZE];
+			byte[] buffer = pooled.array();
 			int length;
 			while (!Judge.isMinusOne(length = randomAccess.read(buffer))) {
 				result.write(buffer, 0, length);
@@ -475,6 +479,8 @@ public class ReadWriteUtils {
 			result.flush();
 		} catch (IOException e) {
 			e.printStackTrace();
+		} finally {
+			BufferPool.release(pooled);
 		}
 		return result.toString(charset);
 	}